@@ -1,9 +1,12 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, and may lie outside the Basic Multilingual Plane.
  *  @author Kevin Chen
  */
 class Alphabet {
@@ -11,35 +14,92 @@ class Alphabet {
     /** A new alphabet containing CHARS.  Character number #k has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-        _alphabet = chars.trim().toUpperCase();
+        _codePoints = chars.trim().toUpperCase().codePoints().toArray();
+        int n = _codePoints.length;
+        int limit = 0;
+        for (int cp : _codePoints) {
+            limit = Math.max(limit, cp + 1);
+        }
+        if (limit <= DIRECT_LIMIT) {
+            _lookup = IndexTable.create(limit, n - 1);
+            for (int i = 0; i < n; i++) {
+                if (_lookup.get(_codePoints[i]) >= 0) {
+                    throw error("duplicate character in alphabet");
+                }
+                _lookup.set(_codePoints[i], i);
+            }
+        } else {
+            long[] pairs = new long[n];
+            for (int i = 0; i < n; i++) {
+                pairs[i] = ((long) _codePoints[i] << Integer.SIZE) | i;
+            }
+            Arrays.sort(pairs);
+            _sorted = new int[n];
+            _sortedIndex = IndexTable.create(n, n - 1);
+            for (int i = 0; i < n; i++) {
+                _sorted[i] = (int) (pairs[i] >>> Integer.SIZE);
+                _sortedIndex.set(i, (int) pairs[i]);
+                if (i > 0 && _sorted[i] == _sorted[i - 1]) {
+                    throw error("duplicate character in alphabet");
+                }
+            }
+        }
     }
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _alphabet.length();
+        return _codePoints.length;
     }
 
     /** Returns true if C is in this alphabet. */
     boolean contains(char c) {
-        for (int i = 0; i < size(); i++) {
-            if (_alphabet.charAt(i) == c) {
-                return true;
-            }
-        }
-        return false;
+        return lookup(c) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size().  The character must be in the Basic
+     *  Multilingual Plane. */
     char toChar(int index) {
-        return _alphabet.charAt(index);
+        return (char) _codePoints[index];
     }
 
     /** Returns the index of character C, which must be in the alphabet. */
     int toInt(char c) {
-        return _alphabet.indexOf(c);
+        return lookup(c);
     }
 
-    /** This is the alphabet. */
-    private String _alphabet;
+    /** Returns the code point of character number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    final int toCodePoint(int index) {
+        return _codePoints[index];
+    }
+
+    /** Returns the index of the character with code point CP, or -1 if it
+     *  is not in the alphabet. */
+    final int lookup(int cp) {
+        if (_lookup != null) {
+            return cp >= 0 && cp < _lookup.length() ? _lookup.get(cp) : -1;
+        }
+        int k = Arrays.binarySearch(_sorted, cp);
+        return k < 0 ? -1 : _sortedIndex.get(k);
+    }
+
+    /** Alphabets whose largest code point is below this are looked up
+     *  through a table indexed directly by code point. */
+    private static final int DIRECT_LIMIT = 1 << 16;
+
+    /** This is the alphabet, as code points. */
+    private final int[] _codePoints;
+
+    /** Maps each code point below the largest in the alphabet to its index,
+     *  or to -1 if it is not in the alphabet.  Null for alphabets
+     *  containing code points at or above DIRECT_LIMIT. */
+    private IndexTable _lookup;
+
+    /** For alphabets without _lookup, the code points of the alphabet in
+     *  increasing order. */
+    private int[] _sorted;
+
+    /** The alphabet indices of the code points in _sorted. */
+    private IndexTable _sortedIndex;
 }
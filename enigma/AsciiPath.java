@@ -0,0 +1,113 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Conversion of message lines given as bytes, for alphabets consisting
+ *  only of ASCII characters.  Bytes are mapped to alphabet indices and
+ *  back through 256-entry tables, with no charset decoding or encoding.
+ *  Lines containing bytes outside ASCII are left for the general path.
+ *  @author Kevin Chen
+ */
+class AsciiPath {
+
+    /** Return a path for ALPHABET, or null if ALPHABET contains characters
+     *  outside ASCII. */
+    static AsciiPath forAlphabet(Alphabet alphabet) {
+        for (int i = 0; i < alphabet.size(); i++) {
+            if (alphabet.toCodePoint(i) >= ASCII_LIMIT) {
+                return null;
+            }
+        }
+        return new AsciiPath(alphabet);
+    }
+
+    /** A path for ALPHABET, which is all ASCII. */
+    private AsciiPath(Alphabet alphabet) {
+        _exact = new byte[TABLE_SIZE];
+        _folded = new byte[TABLE_SIZE];
+        for (int b = 0; b < TABLE_SIZE; b++) {
+            _exact[b] = (byte) (b < ASCII_LIMIT ? alphabet.lookup(b) : -1);
+            if (b < ASCII_LIMIT && Character.isWhitespace(b)) {
+                _folded[b] = WHITESPACE;
+            } else if (b < ASCII_LIMIT) {
+                _folded[b] = (byte) alphabet.lookup(Character.toUpperCase(b));
+            } else {
+                _folded[b] = NON_ASCII;
+            }
+        }
+        _toByte = new byte[alphabet.size()];
+        for (int i = 0; i < _toByte.length; i++) {
+            _toByte[i] = (byte) alphabet.toCodePoint(i);
+        }
+        _buffer = new int[0];
+    }
+
+    /** Convert the message in LINE[0 .. LEN-1] with MACHINE, ignoring
+     *  whitespace and case, and write it to OUT as laid out by FORMATTER.
+     *  Returns false, having done nothing, if LINE contains non-ASCII
+     *  bytes. */
+    boolean convertLine(byte[] line, int len, MachineEngine machine,
+                        Formatter formatter, OutputBuffer out) {
+        if (_buffer.length < len) {
+            _buffer = new int[len];
+        }
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            int c = _folded[line[i] & BYTE_MASK];
+            if (c >= 0) {
+                _buffer[n] = c;
+                n += 1;
+            } else if (c == NON_ASCII) {
+                return false;
+            } else if (c != WHITESPACE) {
+                throw error("character '%c' not in alphabet", (char) line[i]);
+            }
+        }
+        machine.convertIndices(_buffer, 0, n);
+        for (int i = 0; i < n; i++) {
+            _buffer[i] = _toByte[_buffer[i]];
+        }
+        formatter.format(_buffer, n, null, out);
+        return true;
+    }
+
+    /** Convert the bytes of LINE[0 .. LEN-1] that are alphabet characters
+     *  with MACHINE, and write LINE to OUT with those bytes replaced and
+     *  all others unchanged. */
+    void passLine(byte[] line, int len, MachineEngine machine,
+                  OutputBuffer out) {
+        for (int i = 0; i < len; i++) {
+            int c = _exact[line[i] & BYTE_MASK];
+            out.put(c < 0 ? line[i] : _toByte[machine.convert(c)]);
+        }
+        out.newline();
+    }
+
+    /** Number of possible byte values. */
+    private static final int TABLE_SIZE = 256;
+
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Characters below this are ASCII. */
+    private static final int ASCII_LIMIT = 0x80;
+
+    /** Entry in _folded for whitespace. */
+    private static final byte WHITESPACE = -2;
+
+    /** Entry in _folded for bytes outside ASCII. */
+    private static final byte NON_ASCII = -3;
+
+    /** Maps each byte to its alphabet index, or -1. */
+    private final byte[] _exact;
+
+    /** Maps each byte to the alphabet index of its upper-case version,
+     *  or to -1, WHITESPACE or NON_ASCII. */
+    private final byte[] _folded;
+
+    /** Maps each alphabet index to its byte. */
+    private final byte[] _toByte;
+
+    /** Reusable buffer for converting one line. */
+    private int[] _buffer;
+}
@@ -0,0 +1,114 @@
+package enigma;
+
+import java.util.HashMap;
+import java.util.List;
+
+/** A MachineEngine that converts through a PositionAtlas of its rotor
+ *  order, when one is available: each character is one lookup in the
+ *  atlas, between two through the plugboard.  For rotor orders with no
+ *  atlas, or whose rotors differ from those the atlas was written for,
+ *  it converts as a TableEngine does.
+ *  @author Kevin Chen
+ */
+class AtlasEngine extends TableEngine {
+
+    /** An engine compiled from the configuration of CONFIG, using the
+     *  atlases named by PositionAtlas.ATLAS_PROPERTY. */
+    AtlasEngine(Machine config) {
+        this(config, PositionAtlas.shared());
+    }
+
+    /** An engine compiled from the configuration of CONFIG, using
+     *  ATLASES. */
+    AtlasEngine(Machine config, List<PositionAtlas> atlases) {
+        super(config);
+        _atlases = atlases;
+    }
+
+    @Override
+    void insertRotors(String[] rotors) {
+        super.insertRotors(rotors);
+        if (_atlases.isEmpty()) {
+            return;
+        }
+        String order = String.join(" ", rotors);
+        if (order.equals(_order)) {
+            return;
+        }
+        _order = order;
+        if (!_found.containsKey(order)) {
+            _found.put(order, find());
+        }
+        _atlas = _found.get(order);
+    }
+
+    /** Return the atlas for the rotors now in my slots, or null if there
+     *  is none. */
+    private PositionAtlas find() {
+        Rotor[] inserted = new Rotor[_slots];
+        for (int i = 0; i < _slots; i++) {
+            inserted[i] = rotor(i);
+        }
+        byte[] digest =
+            PositionAtlas.digest(alphabet(), numPawls(), inserted);
+        for (PositionAtlas atlas : _atlases) {
+            if (atlas.matches(_slots, digest)) {
+                return atlas;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    void compile() {
+        _plug = plugboard();
+    }
+
+    @Override
+    void positionsChanged() {
+        _base = base();
+    }
+
+    @Override
+    int convert(int c) {
+        if (_atlas == null) {
+            return super.convert(c);
+        }
+        int last = _slots - 1;
+        if (step() < last) {
+            _base = base();
+        }
+        return _plug[_atlas.get((_base + _posn[last]) * _size + _plug[c])];
+    }
+
+    /** Return the number of the position of my rotors between the
+     *  reflector and the rightmost rotor, times the size of the
+     *  alphabet. */
+    private int base() {
+        int result = 0;
+        for (int i = 1; i < _slots - 1; i++) {
+            result = (result + _posn[i]) * _size;
+        }
+        return result;
+    }
+
+    /** The atlases from which I choose. */
+    private final List<PositionAtlas> _atlases;
+
+    /** The atlas of my current rotor order, or null if there is none. */
+    private PositionAtlas _atlas;
+
+    /** The names of the rotors in my slots, separated by blanks, or null
+     *  before any are inserted. */
+    private String _order;
+
+    /** Maps each rotor order met so far, named as _order, to its atlas or
+     *  to null, so that rotors are digested once per order. */
+    private final HashMap<String, PositionAtlas> _found = new HashMap<>();
+
+    /** The plugboard mapping. */
+    private int[] _plug;
+
+    /** The value of base() for my current positions. */
+    private int _base;
+}
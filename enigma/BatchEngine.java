@@ -0,0 +1,53 @@
+package enigma;
+
+/** A TableEngine that converts runs of characters a block at a time.  It
+ *  first steps the rotors through the whole block, recording each rotor's
+ *  table offset for each character, and then makes one pass over the
+ *  block per rotor, so that each pass is a simple loop over one table.
+ *  @author Kevin Chen
+ */
+class BatchEngine extends TableEngine {
+
+    /** An engine compiled from the configuration of CONFIG. */
+    BatchEngine(Machine config) {
+        super(config);
+        _offsets = new int[_slots][BLOCK];
+    }
+
+    @Override
+    void convertIndices(int[] buf, int start, int end) {
+        for (int from = start; from < end; from += BLOCK) {
+            convertBlock(buf, from, Math.min(end, from + BLOCK));
+        }
+    }
+
+    /** Convert BUF[START .. END-1], where END - START <= BLOCK. */
+    private void convertBlock(int[] buf, int start, int end) {
+        int len = end - start, n = _size, last = _slots - 1;
+        for (int k = 0; k < len; k++) {
+            step();
+            for (int i = 0; i < _slots; i++) {
+                _offsets[i][k] = _posn[i] * n;
+            }
+        }
+        for (int i = last; i >= 0; i--) {
+            int[] table = _forward[i], offsets = _offsets[i];
+            for (int k = 0; k < len; k++) {
+                buf[start + k] = table[offsets[k] + buf[start + k]];
+            }
+        }
+        for (int i = 1; i <= last; i++) {
+            int[] table = _backward[i], offsets = _offsets[i];
+            for (int k = 0; k < len; k++) {
+                buf[start + k] = table[offsets[k] + buf[start + k]];
+            }
+        }
+    }
+
+    /** Number of characters converted per block. */
+    private static final int BLOCK = 256;
+
+    /** For each slot, the table offset of its rotor for each character of
+     *  the current block. */
+    private final int[][] _offsets;
+}
@@ -0,0 +1,80 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+
+import static enigma.EnigmaException.*;
+
+/** Compares the speed of the MachineEngines on a given configuration and
+ *  input by running Main on them with each engine in turn.
+ *  @author Kevin Chen
+ */
+class Benchmark {
+
+    /** Time Main with configuration ARGS[0] and input ARGS[1] for each
+     *  engine named in ARGS[2 ..], or for all engines if there are none,
+     *  repeating each run enigma.bench.runs times after as many warm-up
+     *  runs, and print the best time and throughput of each. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 2) {
+                throw error("Usage: Benchmark CONFIG INPUT [ENGINE ...]");
+            }
+            String[] engines = MachineEngines.NAMES;
+            if (args.length > 2) {
+                engines = new String[args.length - 2];
+                System.arraycopy(args, 2, engines, 0, engines.length);
+            }
+            long bytes = new File(args[1]).length();
+            int runs = Integer.getInteger(RUNS_PROPERTY, DEFAULT_RUNS);
+            File output = tempFile();
+            try {
+                for (String engine : engines) {
+                    long best = time(engine, args[0], args[1], output, runs);
+                    System.out.printf("%-10s %8.1f ms %8.1f MB/s%n", engine,
+                                      best / 1e6, bytes * 1e3 / best);
+                }
+            } finally {
+                output.delete();
+            }
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the least time in nanoseconds taken by RUNS runs of Main
+     *  using ENGINE on CONFIG and INPUT, writing to OUTPUT, after RUNS
+     *  warm-up runs. */
+    private static long time(String engine, String config, String input,
+                             File output, int runs) {
+        System.setProperty(MachineEngines.ENGINE_PROPERTY, engine);
+        String[] args = { config, input, output.getPath() };
+        long best = Long.MAX_VALUE;
+        for (int k = 0; k < 2 * runs; k++) {
+            long start = System.nanoTime();
+            Main.main(args);
+            long elapsed = System.nanoTime() - start;
+            if (k >= runs) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best;
+    }
+
+    /** Return a new temporary file for output. */
+    private static File tempFile() {
+        try {
+            return File.createTempFile("enigma", ".out");
+        } catch (IOException excp) {
+            throw error("could not create output file");
+        }
+    }
+
+    /** Name of the system property giving the number of timed runs. */
+    static final String RUNS_PROPERTY = "enigma.bench.runs";
+
+    /** Default number of timed runs. */
+    private static final int DEFAULT_RUNS = 3;
+}
@@ -0,0 +1,307 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A chain of machines, each converting the output of the one before
+ *  (superencipherment).  Each machine runs on its own thread, and the
+ *  threads are connected by SpscRings that carry blocks of alphabet
+ *  indices, one block per input line, so the chain runs about as fast as
+ *  its slowest machine.  A further thread writes the output of the last
+ *  machine.  Blocks are recycled from the writer back to the reader.
+ *
+ *  A settings line for a cascade holds one group of settings per
+ *  machine, each in the usual form and starting with '*', as in
+ *  "* B BETA I II III AAAA * C GAMMA IV V VI BBBB".
+ *  @author Kevin Chen
+ */
+class Cascade {
+
+    /** A cascade in which input is converted by MACHINES[0], MACHINES[1],
+     *  ... in turn, with the output of the last laid out by FORMATTER and
+     *  written to OUT. */
+    Cascade(MachineEngine[] machines, Formatter formatter, OutputBuffer out) {
+        _machines = machines;
+        _formatter = formatter;
+        _out = out;
+        _rings = new ArrayList<>(machines.length + 1);
+        for (int i = 0; i <= machines.length; i++) {
+            _rings.add(new SpscRing<>(POOL_SIZE));
+        }
+        _free = new SpscRing<>(POOL_SIZE);
+        for (int k = 0; k < POOL_SIZE; k++) {
+            _free.offer(new Block());
+        }
+        _threads = new Thread[machines.length + 1];
+        for (int i = 0; i < machines.length; i++) {
+            int stage = i;
+            _threads[i] = new Thread(() -> runStage(stage),
+                                     "enigma-stage-" + (i + 1));
+        }
+        _threads[machines.length] = new Thread(this::runWriter,
+                                               "enigma-writer");
+    }
+
+    /** Start the threads of my machines and writer. */
+    void start() {
+        for (Thread thread : _threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /** Apply the settings line LINE, which must have one group of
+     *  settings for each of my machines, to the following input. */
+    void settings(String line) {
+        String[] groups = line.substring(1).trim().split("\\s+\\*\\s+");
+        if (groups.length != _machines.length) {
+            throw error("settings line needs %d groups of settings, one per "
+                        + "machine", _machines.length);
+        }
+        Block block = freeBlock();
+        block.kind = SETTINGS;
+        block.settings = new String[groups.length];
+        for (int i = 0; i < groups.length; i++) {
+            block.settings[i] = "* " + groups[i].trim();
+        }
+        submit(block);
+    }
+
+    /** Convert the message in LINE, ignoring whitespace and case. */
+    void line(String line) {
+        Block block = freeBlock();
+        block.kind = LINE;
+        block.original = line;
+        if (block.data.length < line.length()) {
+            block.data = new int[line.length()];
+        }
+        Alphabet alphabet = _machines[0].alphabet();
+        int len = 0;
+        for (int i = 0; i < line.length(); ) {
+            int c = line.codePointAt(i);
+            i += Character.charCount(c);
+            if (!Character.isWhitespace(c)) {
+                int k = alphabet.lookup(Character.toUpperCase(c));
+                if (k < 0) {
+                    throw error("character '%s' not in alphabet",
+                                new String(Character.toChars(c)));
+                }
+                block.data[len] = k;
+                len += 1;
+            }
+        }
+        block.length = len;
+        submit(block);
+    }
+
+    /** Wait until all the input so far has been written, and stop my
+     *  threads.  Reports any error met by one of them. */
+    void finish() {
+        Block block = freeBlock();
+        block.kind = END;
+        submit(block);
+        join();
+        if (_failure != null) {
+            throw _failure;
+        }
+    }
+
+    /** Write the output of the input so far, if my threads are still
+     *  running, and stop them, ignoring any error they meet.  Used when
+     *  the input is abandoned because of an error. */
+    void drain() {
+        try {
+            finish();
+        } catch (RuntimeException excp) {
+            cancel();
+            join();
+        }
+    }
+
+    /** Wait for my threads to stop. */
+    private void join() {
+        try {
+            for (Thread thread : _threads) {
+                thread.join();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted");
+        }
+    }
+
+    /** Stop my threads without waiting for them, discarding any input not
+     *  yet written. */
+    void cancel() {
+        for (SpscRing<Block> ring : _rings) {
+            ring.cancel();
+        }
+        _free.cancel();
+    }
+
+    /** Convert the blocks arriving from the ring before machine K with
+     *  that machine and pass them on. */
+    private void runStage(int k) {
+        try {
+            MachineEngine machine = _machines[k];
+            int[] translation = k == 0 ? null
+                : translation(_machines[k - 1].alphabet(),
+                              machine.alphabet());
+            SpscRing<Block> in = _rings.get(k), out = _rings.get(k + 1);
+            for (Block block = in.take(); block != null; block = in.take()) {
+                if (block.kind == SETTINGS) {
+                    Main.setUp(machine, block.settings[k]);
+                } else if (block.kind == LINE) {
+                    if (translation != null) {
+                        translate(block, translation, machine.alphabet());
+                    }
+                    machine.convertIndices(block.data, 0, block.length);
+                }
+                if (!out.put(block) || block.kind == END) {
+                    return;
+                }
+            }
+        } catch (RuntimeException excp) {
+            fail(excp);
+        }
+    }
+
+    /** Write the blocks arriving from the last machine to _out, and
+     *  return them to the free list. */
+    private void runWriter() {
+        try {
+            SpscRing<Block> in = _rings.get(_machines.length);
+            Alphabet alphabet = _machines[_machines.length - 1].alphabet();
+            for (Block block = in.take(); block != null; block = in.take()) {
+                if (block.kind == END) {
+                    return;
+                } else if (block.kind == LINE) {
+                    if (block.original.isEmpty()) {
+                        _out.newline();
+                    } else {
+                        for (int i = 0; i < block.length; i++) {
+                            block.data[i] = alphabet.toCodePoint(block.data[i]);
+                        }
+                        _formatter.format(block.data, block.length,
+                                          block.original, _out);
+                    }
+                }
+                block.original = null;
+                block.settings = null;
+                _free.put(block);
+            }
+        } catch (RuntimeException excp) {
+            fail(excp);
+        }
+    }
+
+    /** Return a table mapping each index in FROM to the index of the same
+     *  character in TO, or to -1 if TO does not contain it. */
+    private static int[] translation(Alphabet from, Alphabet to) {
+        int[] result = new int[from.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = to.lookup(from.toCodePoint(i));
+        }
+        return result;
+    }
+
+    /** Map the indices in BLOCK through TRANSLATION into ALPHABET. */
+    private static void translate(Block block, int[] translation,
+                                  Alphabet alphabet) {
+        for (int i = 0; i < block.length; i++) {
+            int c = translation[block.data[i]];
+            if (c < 0) {
+                throw error("cascaded character not in alphabet %s",
+                            alphabetString(alphabet));
+            }
+            block.data[i] = c;
+        }
+    }
+
+    /** Return the characters of ALPHABET as a string. */
+    private static String alphabetString(Alphabet alphabet) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < alphabet.size(); i++) {
+            result.appendCodePoint(alphabet.toCodePoint(i));
+        }
+        return result.toString();
+    }
+
+    /** Return a free block, waiting for one if need be. */
+    private Block freeBlock() {
+        Block block = _free.take();
+        if (block == null) {
+            throw failure();
+        }
+        return block;
+    }
+
+    /** Pass BLOCK to my first machine. */
+    private void submit(Block block) {
+        if (!_rings.get(0).put(block)) {
+            throw failure();
+        }
+    }
+
+    /** Record EXCP as the reason for stopping, and stop. */
+    private void fail(RuntimeException excp) {
+        synchronized (this) {
+            if (_failure == null) {
+                _failure = excp;
+            }
+        }
+        cancel();
+    }
+
+    /** Return the exception that stopped my threads. */
+    private RuntimeException failure() {
+        return _failure != null ? _failure : error("cascade stopped");
+    }
+
+    /** A line or settings line on its way through the cascade. */
+    private static class Block {
+        /** One of SETTINGS, LINE or END. */
+        private int kind;
+        /** For a LINE, the alphabet indices of its characters. */
+        private int[] data = new int[INITIAL_LENGTH];
+        /** For a LINE, the number of characters in data. */
+        private int length;
+        /** For a LINE, the input line. */
+        private String original;
+        /** For SETTINGS, a settings line for each machine. */
+        private String[] settings;
+    }
+
+    /** Block kinds. */
+    private static final int SETTINGS = 0, LINE = 1, END = 2;
+
+    /** Number of blocks in circulation. */
+    private static final int POOL_SIZE = 256;
+
+    /** Initial length of a block's data. */
+    private static final int INITIAL_LENGTH = 128;
+
+    /** The machines, in order of application. */
+    private final MachineEngine[] _machines;
+
+    /** Layout of the output. */
+    private final Formatter _formatter;
+
+    /** Destination of the output. */
+    private final OutputBuffer _out;
+
+    /** _rings.get(k) carries blocks into machine k, and the last carries
+     *  blocks to the writer. */
+    private final List<SpscRing<Block>> _rings;
+
+    /** Blocks returned by the writer for reuse. */
+    private final SpscRing<Block> _free;
+
+    /** The threads of the machines, followed by the writer's. */
+    private final Thread[] _threads;
+
+    /** The first error met by any thread, or null. */
+    private volatile RuntimeException _failure;
+}
@@ -0,0 +1,93 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Cascade class.
+ *  @author Kevin Chen
+ */
+public class CascadeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Settings of the first and second machines. */
+    private static final String FIRST = "* B BETA I II III AAAA (AQ) (EP)",
+        SECOND = "* C GAMMA IV V VI QZXJ";
+
+    @Test
+    public void testMatchesMachinesInTurn() {
+        checkInTurn(FIRST + " " + SECOND);
+    }
+
+    @Test
+    public void testGroupsSeparatedByWhitespace() {
+        checkInTurn(FIRST + "  \t*   " + SECOND.substring(2));
+    }
+
+    /** Check that a cascade of two naval machines set up by the settings
+     *  line SETTINGS converts as FIRST and SECOND in turn. */
+    private static void checkInTurn(String settings) {
+        String[] lines = { "HELLO WORLD", "", "the quick brown fox",
+                           "JUMPS OVER THE LAZY DOG" };
+        Machine first = navalMachine(), second = navalMachine();
+        Main.setUp(first, FIRST);
+        Main.setUp(second, SECOND);
+        StringBuilder expected = new StringBuilder();
+        for (String line : lines) {
+            String msg = line.replaceAll("\\s+", "").toUpperCase();
+            expected.append(second.convert(first.convert(msg))).append("\n");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputBuffer out = new OutputBuffer(bytes, 0);
+        Cascade cascade = new Cascade(
+            new MachineEngine[] { navalMachine(), navalMachine() },
+            Formatter.forName("none"), out);
+        cascade.start();
+        cascade.settings(settings);
+        for (String line : lines) {
+            cascade.line(line);
+        }
+        cascade.finish();
+        out.flush();
+        assertEquals(expected.toString(), bytes.toString());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testStageErrorReported() {
+        Cascade cascade = new Cascade(
+            new MachineEngine[] { navalMachine(), navalMachine() },
+            Formatter.forName("none"),
+            new OutputBuffer(new ByteArrayOutputStream(), 0));
+        cascade.start();
+        try {
+            cascade.settings(FIRST + " * B NOSUCH I II III AAAA");
+            cascade.line("HELLO");
+            cascade.finish();
+        } finally {
+            cascade.cancel();
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingGroup() {
+        Cascade cascade = new Cascade(
+            new MachineEngine[] { navalMachine(), navalMachine() },
+            Formatter.forName("none"),
+            new OutputBuffer(new ByteArrayOutputStream(), 0));
+        cascade.start();
+        try {
+            cascade.settings(FIRST);
+        } finally {
+            cascade.cancel();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import static enigma.EnigmaException.*;
+
+/** A record of how far Main has progressed through its input: the byte
+ *  offsets of the next unread input line and of the end of the output
+ *  written so far, the settings line most recently applied, the
+ *  plugboard in force (which an earlier settings line may have given),
+ *  and the positions of the rotors in each slot at that point.
+ *  @author Kevin Chen
+ */
+class Checkpoint {
+
+    /** A checkpoint at input offset INPUTOFFSET and output offset
+     *  OUTPUTOFFSET, with settings line SETTINGS, plugboard cycles
+     *  PLUGBOARD (null if none) and rotor positions POSITIONS in
+     *  force. */
+    Checkpoint(long inputOffset, long outputOffset, String settings,
+               String plugboard, int[] positions) {
+        _inputOffset = inputOffset;
+        _outputOffset = outputOffset;
+        _settings = settings;
+        _plugboard = plugboard;
+        _positions = positions;
+    }
+
+    /** Return the checkpoint stored in FILE, or null if there is none. */
+    static Checkpoint read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+            String[] posns = props.getProperty("positions").trim()
+                .split("\\s+");
+            int[] positions = new int[posns.length];
+            for (int i = 0; i < posns.length; i++) {
+                positions[i] = Integer.parseInt(posns[i]);
+            }
+            return new Checkpoint(
+                Long.parseLong(props.getProperty("input.offset")),
+                Long.parseLong(props.getProperty("output.offset")),
+                props.getProperty("settings"),
+                props.getProperty("plugboard"), positions);
+        } catch (IOException | RuntimeException excp) {
+            throw error("bad checkpoint file %s", file);
+        }
+    }
+
+    /** Store me in FILE, replacing its previous contents atomically. */
+    void write(File file) {
+        Properties props = new Properties();
+        props.setProperty("input.offset", Long.toString(_inputOffset));
+        props.setProperty("output.offset", Long.toString(_outputOffset));
+        props.setProperty("settings", _settings);
+        if (_plugboard != null) {
+            props.setProperty("plugboard", _plugboard);
+        }
+        StringBuilder posns = new StringBuilder();
+        for (int p : _positions) {
+            posns.append(p).append(' ');
+        }
+        props.setProperty("positions", posns.toString().trim());
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                props.store(out, "enigma checkpoint");
+                out.getFD().sync();
+            }
+            Files.move(tmp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw error("could not write checkpoint %s", file);
+        }
+    }
+
+    /** Return the offset of the next unread input line. */
+    long inputOffset() {
+        return _inputOffset;
+    }
+
+    /** Return the number of bytes of output written. */
+    long outputOffset() {
+        return _outputOffset;
+    }
+
+    /** Return the settings line in force. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Return the plugboard cycles in force, or null if none. */
+    String plugboard() {
+        return _plugboard;
+    }
+
+    /** Return the rotor positions, indexed by slot. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** Offset of the next unread input line. */
+    private final long _inputOffset;
+
+    /** Number of bytes of output written. */
+    private final long _outputOffset;
+
+    /** The settings line in force. */
+    private final String _settings;
+
+    /** The plugboard cycles in force, or null. */
+    private final String _plugboard;
+
+    /** Rotor positions, indexed by slot. */
+    private final int[] _positions;
+}
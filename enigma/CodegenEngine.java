@@ -0,0 +1,392 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A CompiledEngine whose conversion path is a class generated at run
+ *  time for its shape: its number of rotor slots and alphabet size.  The
+ *  generated convert method is straight-line code: one table lookup per
+ *  rotor on each pass, with the slot numbers and the alphabet size as
+ *  constants, no loops and no branches (the tables already include the
+ *  wrap-around of each rotor's setting and the plugboard).
+ *
+ *  The class is specialised to the shape only, not to the whole
+ *  configuration.  The wirings are not baked in: the tables are loaded
+ *  from fields of their own, rebound by compile whenever the rotor order
+ *  or plugboard changes, and rotor stepping, and so the number of pawls,
+ *  is left to CompiledEngine.step.  Classes are generated as hidden
+ *  classes through java.lang.invoke, and are shared, with a MethodHandle
+ *  of their constructors, by engines of the same shape.
+ *
+ *  Generation is disabled by setting the system property enigma.codegen
+ *  to false, and is also skipped where classes cannot be defined at run
+ *  time (as in a native image); create then returns a TableEngine.
+ *  @author Kevin Chen
+ */
+class CodegenEngine extends CompiledEngine {
+
+    /** Return an engine compiled from the configuration of CONFIG: a
+     *  CodegenEngine if generation is enabled and works, and otherwise a
+     *  TableEngine. */
+    static CompiledEngine create(Machine config) {
+        MethodHandle converter = null;
+        if (ENABLED) {
+            converter = converterConstructor(config.numRotors(),
+                                             config.alphabet().size());
+        }
+        if (converter == null) {
+            return new TableEngine(config);
+        }
+        return new CodegenEngine(config, newConverter(converter));
+    }
+
+    /** An engine compiled from the configuration of CONFIG that converts
+     *  with CONVERTER. */
+    private CodegenEngine(Machine config, Converter converter) {
+        super(config);
+        _converter = converter;
+    }
+
+    @Override
+    void compile() {
+        _converter.bind(_forward, _backward);
+    }
+
+    @Override
+    int convert(int c) {
+        step();
+        return _converter.convert(c, _posn);
+    }
+
+    /** The superclass of generated converters. */
+    abstract static class Converter {
+        /** Take my tables from FORWARD and BACKWARD, as in
+         *  CompiledEngine. */
+        abstract void bind(int[][] forward, int[][] backward);
+
+        /** Return the conversion of C with rotors at positions POSN. */
+        abstract int convert(int c, int[] posn);
+    }
+
+    /** Return the constructor, of type ()Converter, of the converter
+     *  class for SLOTS rotor slots and an alphabet of SIZE characters,
+     *  generating the class if need be, or null if it cannot be
+     *  generated. */
+    private static MethodHandle converterConstructor(int slots, int size) {
+        long key = (long) slots << Integer.SIZE | size;
+        MethodHandle result = CONSTRUCTORS.get(key);
+        if (result == null) {
+            try {
+                byte[] bytes = new ConverterWriter(slots, size).toBytes();
+                MethodHandles.Lookup lookup =
+                    MethodHandles.lookup().defineHiddenClass(bytes, true);
+                result = lookup
+                    .findConstructor(lookup.lookupClass(),
+                                     MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Converter.class));
+            } catch (ReflectiveOperationException | LinkageError
+                     | UnsupportedOperationException excp) {
+                return null;
+            }
+            MethodHandle other = CONSTRUCTORS.putIfAbsent(key, result);
+            result = other != null ? other : result;
+        }
+        return result;
+    }
+
+    /** Return a new converter made by CONSTRUCTOR. */
+    private static Converter newConverter(MethodHandle constructor) {
+        try {
+            return (Converter) constructor.invokeExact();
+        } catch (Throwable excp) {
+            throw new IllegalStateException("generated converter", excp);
+        }
+    }
+
+    /** Writer of the class file of a Converter for a given number of
+     *  slots and alphabet size.  The class has a field for each table,
+     *  f0 .. f(slots-1) and b1 .. b(slots-1). */
+    private static class ConverterWriter {
+
+        /** A writer for SLOTS slots and an alphabet of SIZE characters. */
+        ConverterWriter(int slots, int size) {
+            _slots = slots;
+            _size = size;
+        }
+
+        /** Return the class file. */
+        byte[] toBytes() {
+            int thisClass = classRef("enigma/GeneratedConverter");
+            int superClass = classRef(SUPER);
+            int superInit = methodRef(superClass, "<init>", "()V");
+            int[] forward = new int[_slots], backward = new int[_slots];
+            for (int i = 0; i < _slots; i++) {
+                forward[i] = fieldRef(thisClass, "f" + i, "[I");
+                backward[i] = i == 0 ? 0 : fieldRef(thisClass, "b" + i, "[I");
+            }
+            int sizeConstant = _size > Short.MAX_VALUE ? integer(_size) : 0;
+
+            Code init = new Code();
+            init.op(ALOAD_0).op(INVOKESPECIAL).u2(superInit).op(RETURN);
+
+            Code bind = new Code();
+            for (int i = 0; i < _slots; i++) {
+                bind.op(ALOAD_0).op(ALOAD_1).push(i).op(AALOAD)
+                    .op(PUTFIELD).u2(forward[i]);
+                if (i > 0) {
+                    bind.op(ALOAD_0).op(ALOAD_2).push(i).op(AALOAD)
+                        .op(PUTFIELD).u2(backward[i]);
+                }
+            }
+            bind.op(RETURN);
+
+            Code convert = new Code();
+            for (int i = _slots - 1; i >= 0; i--) {
+                lookup(convert, forward[i], i, sizeConstant);
+            }
+            for (int i = 1; i < _slots; i++) {
+                lookup(convert, backward[i], i, sizeConstant);
+            }
+            convert.op(ILOAD_1).op(IRETURN);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(MAGIC);
+                out.writeShort(0);
+                out.writeShort(VERSION);
+                int methods = utf8("<init>"), code = utf8("Code");
+                int bindName = utf8("bind"), convertName = utf8("convert");
+                int initType = utf8("()V"), bindType = utf8("([[I[[I)V");
+                int convertType = utf8("(I[I)I");
+                int fieldType = utf8("[I");
+                out.writeShort(_pool.size() + 1);
+                for (byte[] entry : _pool) {
+                    out.write(entry);
+                }
+                out.writeShort(ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0);
+                out.writeShort(2 * _slots - 1);
+                for (int i = 0; i < _slots; i++) {
+                    writeField(out, utf8("f" + i), fieldType);
+                    if (i > 0) {
+                        writeField(out, utf8("b" + i), fieldType);
+                    }
+                }
+                out.writeShort(3);
+                writeMethod(out, ACC_PUBLIC, methods, initType, code, init,
+                            1, 1);
+                writeMethod(out, 0, bindName, bindType, code, bind, 3, 3);
+                writeMethod(out, 0, convertName, convertType, code, convert,
+                            4, 3);
+                out.writeShort(0);
+            } catch (IOException excp) {
+                throw new IllegalStateException(excp);
+            }
+            return bytes.toByteArray();
+        }
+
+        /** Append to CODE: c = FIELD[posn[SLOT] * size + c], where the
+         *  reflector's position (SLOT 0) is always 0.  SIZECONSTANT is the
+         *  pool entry of the size, if it does not fit in a short. */
+        private void lookup(Code code, int field, int slot,
+                            int sizeConstant) {
+            code.op(ALOAD_0).op(GETFIELD).u2(field);
+            if (slot > 0) {
+                code.op(ALOAD_2).push(slot).op(IALOAD);
+                if (sizeConstant != 0) {
+                    code.op(LDC_W).u2(sizeConstant);
+                } else {
+                    code.push(_size);
+                }
+                code.op(IMUL).op(ILOAD_1).op(IADD);
+            } else {
+                code.op(ILOAD_1);
+            }
+            code.op(IALOAD).op(ISTORE_1);
+        }
+
+        /** Write a field with name NAME and type TYPE to OUT. */
+        private void writeField(DataOutputStream out, int name, int type)
+            throws IOException {
+            out.writeShort(0);
+            out.writeShort(name);
+            out.writeShort(type);
+            out.writeShort(0);
+        }
+
+        /** Write a method to OUT with access FLAGS, name NAME, type TYPE
+         *  and body BODY, using a stack of MAXSTACK and MAXLOCALS locals.
+         *  CODE is the pool entry of "Code". */
+        private void writeMethod(DataOutputStream out, int flags, int name,
+                                 int type, int code, Code body,
+                                 int maxStack, int maxLocals)
+            throws IOException {
+            out.writeShort(flags);
+            out.writeShort(name);
+            out.writeShort(type);
+            out.writeShort(1);
+            out.writeShort(code);
+            byte[] bytes = body.toBytes();
+            out.writeInt(12 + bytes.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+        /** Return the pool entry of the string S. */
+        private int utf8(String s) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(CONSTANT_UTF8);
+                out.writeUTF(s);
+            } catch (IOException excp) {
+                throw new IllegalStateException(excp);
+            }
+            return entry(bytes.toByteArray());
+        }
+
+        /** Return the pool entry of the class named NAME. */
+        private int classRef(String name) {
+            return entry(CONSTANT_CLASS, utf8(name));
+        }
+
+        /** Return the pool entry of the integer N. */
+        private int integer(int n) {
+            return entry(new byte[] { CONSTANT_INTEGER, (byte) (n >>> 24),
+                                      (byte) (n >>> 16), (byte) (n >>> 8),
+                                      (byte) n });
+        }
+
+        /** Return the pool entry of field NAME of type TYPE in the class
+         *  whose entry is OWNER. */
+        private int fieldRef(int owner, String name, String type) {
+            return entry(CONSTANT_FIELDREF, owner, nameAndType(name, type));
+        }
+
+        /** Return the pool entry of method NAME of type TYPE in the class
+         *  whose entry is OWNER. */
+        private int methodRef(int owner, String name, String type) {
+            return entry(CONSTANT_METHODREF, owner, nameAndType(name, type));
+        }
+
+        /** Return the pool entry of name NAME and type TYPE. */
+        private int nameAndType(String name, String type) {
+            return entry(CONSTANT_NAME_AND_TYPE, utf8(name), utf8(type));
+        }
+
+        /** Return the pool entry with tag TAG and two-byte operands
+         *  OPERANDS. */
+        private int entry(int tag, int... operands) {
+            byte[] bytes = new byte[1 + 2 * operands.length];
+            bytes[0] = (byte) tag;
+            for (int i = 0; i < operands.length; i++) {
+                bytes[1 + 2 * i] = (byte) (operands[i] >>> 8);
+                bytes[2 + 2 * i] = (byte) operands[i];
+            }
+            return entry(bytes);
+        }
+
+        /** Return the pool entry whose bytes are BYTES, adding it if
+         *  need be. */
+        private int entry(byte[] bytes) {
+            for (int k = 0; k < _pool.size(); k++) {
+                if (Arrays.equals(_pool.get(k), bytes)) {
+                    return k + 1;
+                }
+            }
+            _pool.add(bytes);
+            return _pool.size();
+        }
+
+        /** Number of slots. */
+        private final int _slots;
+
+        /** Size of the alphabet. */
+        private final int _size;
+
+        /** The constant pool, from entry 1. */
+        private final List<byte[]> _pool = new ArrayList<>();
+    }
+
+    /** The bytecode of a method. */
+    private static class Code {
+
+        /** Append the instruction OPCODE and return me. */
+        Code op(int opcode) {
+            _bytes.write(opcode);
+            return this;
+        }
+
+        /** Append the two-byte operand N and return me. */
+        Code u2(int n) {
+            _bytes.write(n >>> 8);
+            _bytes.write(n);
+            return this;
+        }
+
+        /** Append an instruction pushing N, which fits in a short, and
+         *  return me. */
+        Code push(int n) {
+            if (n <= ICONST_MAX) {
+                return op(ICONST_0 + n);
+            } else if (n <= Byte.MAX_VALUE) {
+                return op(BIPUSH).op(n);
+            }
+            return op(SIPUSH).u2(n);
+        }
+
+        /** Return my bytes. */
+        byte[] toBytes() {
+            return _bytes.toByteArray();
+        }
+
+        /** The bytecode so far. */
+        private final ByteArrayOutputStream _bytes =
+            new ByteArrayOutputStream();
+    }
+
+    /** True iff code generation is enabled, by system property
+     *  enigma.codegen (true by default). */
+    static final boolean ENABLED =
+        !"false".equals(System.getProperty("enigma.codegen"));
+
+    /** Constructors of generated converter classes, by slots and
+     *  alphabet size. */
+    private static final Map<Long, MethodHandle> CONSTRUCTORS =
+        new ConcurrentHashMap<>();
+
+    /** Name of the superclass of generated converters. */
+    private static final String SUPER = "enigma/CodegenEngine$Converter";
+
+    /** Class file constants. */
+    private static final int MAGIC = 0xcafebabe, VERSION = 52,
+        ACC_PUBLIC = 0x1, ACC_FINAL = 0x10, ACC_SUPER = 0x20,
+        CONSTANT_UTF8 = 1, CONSTANT_INTEGER = 3, CONSTANT_CLASS = 7,
+        CONSTANT_FIELDREF = 9, CONSTANT_METHODREF = 10,
+        CONSTANT_NAME_AND_TYPE = 12;
+
+    /** Opcodes. */
+    private static final int ICONST_0 = 0x03, ICONST_MAX = 5, BIPUSH = 0x10,
+        SIPUSH = 0x11, LDC_W = 0x13, ILOAD_1 = 0x1b, ALOAD_0 = 0x2a,
+        ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, IALOAD = 0x2e, AALOAD = 0x32,
+        ISTORE_1 = 0x3c, IADD = 0x60, IMUL = 0x68, IRETURN = 0xac,
+        RETURN = 0xb1, GETFIELD = 0xb4, PUTFIELD = 0xb5,
+        INVOKESPECIAL = 0xb7;
+
+    /** The generated converter. */
+    private final Converter _converter;
+}
@@ -0,0 +1,241 @@
+package enigma;
+
+import java.util.HashMap;
+
+/** A MachineEngine that converts using tables compiled from the
+ *  configuration of a reference Machine.  The Machine is used to look up
+ *  and validate rotors and settings; the engine then keeps its own rotor
+ *  positions and steps them exactly as Machine.advanceAll does.  The
+ *  plugboard is folded into the tables of the rightmost rotor, so
+ *  conversion never consults it directly.
+ *  @author Kevin Chen
+ */
+abstract class CompiledEngine extends MachineEngine {
+
+    /** An engine compiled from the configuration of CONFIG. */
+    CompiledEngine(Machine config) {
+        _config = config;
+        _size = config.alphabet().size();
+        _slots = config.numRotors();
+        _firstPawl = _slots - config.numPawls() + 1;
+        _posn = new int[_slots];
+        _advance = new boolean[_slots];
+        _moving = new boolean[_slots];
+        _notches = new boolean[_slots][];
+        _forward = new int[_slots][];
+        _backward = new int[_slots][];
+        _plug = identity();
+    }
+
+    @Override
+    Alphabet alphabet() {
+        return _config.alphabet();
+    }
+
+    @Override
+    int numRotors() {
+        return _slots;
+    }
+
+    @Override
+    int numPawls() {
+        return _config.numPawls();
+    }
+
+    @Override
+    void insertRotors(String[] rotors) {
+        _config.insertRotors(rotors);
+        for (int i = 0; i < _slots; i++) {
+            Rotor rotor = _config.rotor(i);
+            _moving[i] = rotor.rotates();
+            _notches[i] = null;
+            if (_moving[i]) {
+                _notches[i] = new boolean[_size];
+                for (int p = 0; p < _size; p++) {
+                    _notches[i][p] = rotor.notchAt(p);
+                }
+            }
+            int[][] tables = rotorTables(rotor);
+            _forward[i] = tables[0];
+            _backward[i] = tables[1];
+        }
+        _rightForward = _forward[_slots - 1];
+        _rightBackward = _backward[_slots - 1];
+        foldPlugboard();
+        compile();
+        load(_config.positions());
+    }
+
+    @Override
+    void setRotors(String setting) {
+        _config.setRotors(setting);
+        load(_config.positions());
+    }
+
+    @Override
+    int[] positions() {
+        return _posn.clone();
+    }
+
+    @Override
+    void setPositions(int[] positions) {
+        _config.setPositions(positions);
+        load(positions);
+    }
+
+    @Override
+    void setPlugboard(Permutation plugboard) {
+        _config.setPlugboard(plugboard);
+        _plug = identity();
+        if (plugboard != null) {
+            for (int c = 0; c < _size; c++) {
+                _plug[c] = plugboard.permute(c);
+            }
+        }
+        if (_rightForward != null) {
+            foldPlugboard();
+            compile();
+        }
+    }
+
+    /** Return the rotor in slot K of the Machine I compile. */
+    final Rotor rotor(int k) {
+        return _config.rotor(k);
+    }
+
+    /** Return the plugboard mapping, indexed by alphabet index.  The
+     *  result must not be modified. */
+    final int[] plugboard() {
+        return _plug;
+    }
+
+    /** Called after _forward and _backward have been rebuilt for newly
+     *  inserted rotors or a new plugboard. */
+    void compile() {
+    }
+
+    /** Called after my rotor positions have been replaced. */
+    void positionsChanged() {
+    }
+
+    /** Advance my rotors according to their notches, as
+     *  Machine.advanceAll does.  Returns the leftmost slot whose rotor
+     *  moved, or numRotors() if none did. */
+    final int step() {
+        int last = _slots - 1;
+        for (int i = _firstPawl; i < _slots; i++) {
+            if (_notches[i] != null && _notches[i][_posn[i]]) {
+                _advance[i - 1] = _advance[i] = true;
+            }
+        }
+        _advance[last] = true;
+        int leftmost = _slots;
+        for (int i = last; i >= 0; i--) {
+            if (_advance[i]) {
+                _advance[i] = false;
+                if (_moving[i]) {
+                    _posn[i] = _posn[i] + 1 == _size ? 0 : _posn[i] + 1;
+                    leftmost = i;
+                }
+            }
+        }
+        return leftmost;
+    }
+
+    /** Return the forward and backward tables of ROTOR, whose entry
+     *  S * size + P is the conversion of P at setting S.  The tables are
+     *  built once per rotor and shared by every slot it is inserted in,
+     *  and must not be modified. */
+    private int[][] rotorTables(Rotor rotor) {
+        int[][] result = _tables.get(rotor);
+        if (result == null) {
+            Permutation perm = rotor.permutation();
+            int[] forward = new int[_size * _size],
+                backward = new int[_size * _size];
+            for (int s = 0; s < _size; s++) {
+                for (int p = 0; p < _size; p++) {
+                    forward[s * _size + p] =
+                        Math.floorMod(perm.permute(p + s) - s, _size);
+                    backward[s * _size + p] =
+                        Math.floorMod(perm.invert(p + s) - s, _size);
+                }
+            }
+            result = new int[][] { forward, backward };
+            _tables.put(rotor, result);
+        }
+        return result;
+    }
+
+    /** Set the tables of my rightmost rotor to its own tables with the
+     *  plugboard applied on entry to the forward table and on exit from
+     *  the backward table, at every setting. */
+    private void foldPlugboard() {
+        int last = _slots - 1, n = _size;
+        int[] forward = new int[n * n], backward = new int[n * n];
+        for (int s = 0; s < n * n; s += n) {
+            for (int p = 0; p < n; p++) {
+                forward[s + p] = _rightForward[s + _plug[p]];
+                backward[s + p] = _plug[_rightBackward[s + p]];
+            }
+        }
+        _forward[last] = forward;
+        _backward[last] = backward;
+    }
+
+    /** Set my rotor positions to POSITIONS. */
+    private void load(int[] positions) {
+        System.arraycopy(positions, 0, _posn, 0, _slots);
+        positionsChanged();
+    }
+
+    /** Return the identity mapping on my alphabet. */
+    private int[] identity() {
+        int[] result = new int[_size];
+        for (int c = 0; c < _size; c++) {
+            result[c] = c;
+        }
+        return result;
+    }
+
+    /** The size of my alphabet. */
+    final int _size;
+
+    /** The number of rotor slots. */
+    final int _slots;
+
+    /** The current position of the rotor in each slot. */
+    final int[] _posn;
+
+    /** Forward conversion tables, indexed by slot, then by
+     *  setting * size + contact, with the plugboard folded into that of
+     *  the rightmost slot. */
+    final int[][] _forward;
+
+    /** Backward conversion tables, indexed like _forward. */
+    final int[][] _backward;
+
+    /** The Machine whose configuration I compile. */
+    private final Machine _config;
+
+    /** The leftmost slot whose notch can advance its neighbor. */
+    private final int _firstPawl;
+
+    /** Scratch space for step(): which slots advance. */
+    private final boolean[] _advance;
+
+    /** The plugboard mapping. */
+    private int[] _plug;
+
+    /** The tables of each rotor I have inserted, by rotor. */
+    private final HashMap<Rotor, int[][]> _tables = new HashMap<>();
+
+    /** Tables of the rightmost rotor without the plugboard. */
+    private int[] _rightForward, _rightBackward;
+
+    /** Which slots hold moving rotors. */
+    private final boolean[] _moving;
+
+    /** For each slot holding a moving rotor, the positions at which it has
+     *  a notch; null for other slots. */
+    private final boolean[][] _notches;
+}
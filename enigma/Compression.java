@@ -0,0 +1,74 @@
+package enigma;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static enigma.EnigmaException.*;
+
+/** Compressed input and output files, chosen by name: files ending in
+ *  ".gz" are gzip files and files ending in ".deflate" are zlib
+ *  (deflate) streams.  Inflation runs on the thread of a
+ *  PrefetchChannel and deflation on that of a WriteBehindStream, so that
+ *  both overlap with conversion.
+ *  @author Kevin Chen
+ */
+class Compression {
+
+    /** Return true iff the file named NAME is compressed. */
+    static boolean isCompressed(String name) {
+        return name.endsWith(GZIP_SUFFIX) || name.endsWith(DEFLATE_SUFFIX);
+    }
+
+    /** Return a channel reading the uncompressed contents of the
+     *  compressed file named NAME. */
+    static ReadableByteChannel openInput(String name) {
+        try {
+            InputStream file = new FileInputStream(name);
+            try {
+                return new PrefetchChannel(
+                    name.endsWith(GZIP_SUFFIX)
+                    ? new GZIPInputStream(file, PrefetchChannel.CHUNK_SIZE)
+                    : new InflaterInputStream(file));
+            } catch (IOException excp) {
+                file.close();
+                throw excp;
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a stream writing compressed output to the file named NAME,
+     *  which is overwritten.  The stream must be closed to complete the
+     *  file. */
+    static OutputStream openOutput(String name) {
+        try {
+            OutputStream file = new FileOutputStream(name);
+            try {
+                return new WriteBehindStream(
+                    name.endsWith(GZIP_SUFFIX)
+                    ? new GZIPOutputStream(file, WriteBehindStream.CHUNK_SIZE)
+                    : new DeflaterOutputStream(file));
+            } catch (IOException excp) {
+                file.close();
+                throw excp;
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Suffix of gzip file names. */
+    static final String GZIP_SUFFIX = ".gz";
+
+    /** Suffix of zlib file names. */
+    static final String DEFLATE_SUFFIX = ".deflate";
+}
@@ -0,0 +1,77 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the Compression class.
+ *  @author Kevin Chen
+ */
+public class CompressionTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Write LINES to a compressed temporary file with suffix SUFFIX,
+     *  read them back, and check that they are unchanged. */
+    private static void checkRoundTrip(String suffix, String[] lines)
+        throws IOException {
+        File file = File.createTempFile("compressed", suffix);
+        file.deleteOnExit();
+        assertTrue(Compression.isCompressed(file.getPath()));
+        try (OutputStream out = Compression.openOutput(file.getPath())) {
+            for (String line : lines) {
+                out.write((line + "\n").getBytes());
+            }
+        }
+        LineReader in =
+            new LineReader(Compression.openInput(file.getPath()), 0);
+        for (String line : lines) {
+            assertEquals(line, in.nextLine());
+        }
+        assertNull(in.nextLine());
+        in.close();
+    }
+
+    /** Return COUNT random lines, using RANDOM, totalling several
+     *  chunks. */
+    private static String[] lines(Random random, int count) {
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int k = random.nextInt(200); k > 0; k--) {
+                line.append((char) ('A' + random.nextInt(26)));
+            }
+            result[i] = line.toString();
+        }
+        return result;
+    }
+
+    @Test
+    public void testGzipRoundTrip() throws IOException {
+        checkRoundTrip(Compression.GZIP_SUFFIX, lines(new Random(1), 5000));
+    }
+
+    @Test
+    public void testDeflateRoundTrip() throws IOException {
+        checkRoundTrip(Compression.DEFLATE_SUFFIX,
+                       lines(new Random(2), 5000));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        checkRoundTrip(Compression.GZIP_SUFFIX, new String[0]);
+    }
+
+    @Test
+    public void testNotCompressed() {
+        assertFalse(Compression.isCompressed("traffic.inp"));
+    }
+}
@@ -0,0 +1,123 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** A layout for converted messages.  A Formatter writes the converted
+ *  characters of one input line directly into an OutputBuffer.
+ *  @author Kevin Chen
+ */
+abstract class Formatter {
+
+    /** Write the LEN converted code points MSG[0 .. LEN-1] of input line
+     *  ORIGINAL to OUT, followed by a line terminator. */
+    abstract void format(int[] msg, int len, CharSequence original,
+                         OutputBuffer out);
+
+    /** Return the formatter described by SPEC, which is null (for the
+     *  default of five-letter groups), "preserve" (keep the layout of the
+     *  input line, whitespace and punctuation included), or a
+     *  comma-separated list of "group:N" (N-letter groups, where 0 means
+     *  no grouping), "none" (same as "group:0") and "width:W" (at most W
+     *  characters per output line, where 0 means no limit). */
+    static Formatter forName(String spec) {
+        if (spec == null) {
+            return new Grouping(DEFAULT_GROUP, 0);
+        } else if (spec.equals("preserve")) {
+            return new Preserving();
+        }
+        int group = DEFAULT_GROUP, width = 0;
+        for (String item : spec.split(",")) {
+            item = item.trim();
+            try {
+                if (item.equals("none")) {
+                    group = 0;
+                } else if (item.startsWith("group:")) {
+                    group = Integer.parseInt(item.substring(6));
+                } else if (item.startsWith("width:")) {
+                    width = Integer.parseInt(item.substring(6));
+                } else {
+                    throw error("unknown output format: %s", item);
+                }
+            } catch (NumberFormatException excp) {
+                throw error("bad number in output format: %s", item);
+            }
+        }
+        if (group < 0 || width < 0) {
+            throw error("output format sizes must be non-negative");
+        }
+        return new Grouping(group, width);
+    }
+
+    /** Letters per group in the default format. */
+    static final int DEFAULT_GROUP = 5;
+
+    /** Formats messages in groups of a fixed number of letters separated by
+     *  blanks, optionally breaking lines at a maximum width.  Lines are
+     *  broken between groups where possible. */
+    static class Grouping extends Formatter {
+
+        /** A formatter for GROUP-letter groups (no grouping if GROUP is 0)
+         *  on lines of at most WIDTH characters (unlimited if 0). */
+        Grouping(int group, int width) {
+            _group = group;
+            _width = width;
+        }
+
+        @Override
+        void format(int[] msg, int len, CharSequence original,
+                    OutputBuffer out) {
+            int column = 0;
+            for (int i = 0; i < len; i++) {
+                boolean groupStart = _group > 0 && i > 0 && i % _group == 0;
+                if (_width > 0) {
+                    int needed = groupStart ? Math.min(_group, len - i) + 1 : 1;
+                    if (column > 0 && column + needed > _width
+                        && (groupStart || _group == 0 || _group >= _width)) {
+                        out.newline();
+                        column = 0;
+                        groupStart = false;
+                    }
+                }
+                if (groupStart) {
+                    out.put(' ');
+                    column += 1;
+                }
+                out.putCodePoint(msg[i]);
+                column += 1;
+            }
+            out.newline();
+        }
+
+        /** Letters per group, or 0 for none. */
+        private final int _group;
+
+        /** Maximum line width, or 0 for none. */
+        private final int _width;
+    }
+
+    /** Formats messages in the layout of the original line.  The
+     *  converted message holds every character of the line other than
+     *  whitespace, in order; Main converts those in the alphabet and
+     *  leaves the others, such as punctuation, unchanged, without
+     *  advancing the rotors for them.  Whitespace is restored to its
+     *  original positions. */
+    static class Preserving extends Formatter {
+
+        @Override
+        void format(int[] msg, int len, CharSequence original,
+                    OutputBuffer out) {
+            int k = 0;
+            for (int i = 0; i < original.length(); ) {
+                int c = Character.codePointAt(original, i);
+                if (Character.isWhitespace(c) || k == len) {
+                    out.putCodePoint(c);
+                } else {
+                    out.putCodePoint(msg[k]);
+                    k += 1;
+                }
+                i += Character.charCount(c);
+            }
+            out.newline();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+
+/** The suite of all JUnit tests for the Formatter class.
+ *  @author Kevin Chen
+ */
+public class FormatterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the result of formatting the letters of ORIGINAL, with its
+     *  whitespace removed, according to SPEC. */
+    private String format(String spec, String original) {
+        int[] msg = original.replaceAll("\\s+", "").codePoints().toArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputBuffer out = new OutputBuffer(bytes, 0);
+        Formatter.forName(spec).format(msg, msg.length, original, out);
+        out.flush();
+        assertEquals(bytes.size(), out.written());
+        return bytes.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testDefault() {
+        assertEquals("ABCDE FGHIJ K\n", format(null, "ABCDEFGHIJK"));
+        assertEquals("ABCDE\n", format(null, "ABCDE"));
+        assertEquals("\n", format(null, ""));
+    }
+
+    @Test
+    public void testGroups() {
+        assertEquals("ABCDEFGHIJK\n", format("none", "ABC DEFGHIJK"));
+        assertEquals("ABC DEF GHI JK\n", format("group:3", "ABCDEFGHIJK"));
+    }
+
+    @Test
+    public void testWidth() {
+        assertEquals("ABCDE FGHIJ\nK\n",
+                     format("width:11", "ABCDEFGHIJK"));
+        assertEquals("ABCD\nEFGH\nIJK\n",
+                     format("none,width:4", "ABCDEFGHIJK"));
+    }
+
+    @Test
+    public void testPreserve() {
+        assertEquals("AB  CDE\tF\n", format("preserve", "AB  CDE\tF"));
+        assertEquals("AB, CD!\n", format("preserve", "AB, CD!"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadSpec() {
+        format("group:x", "ABC");
+    }
+}
@@ -0,0 +1,71 @@
+package enigma;
+
+/** A MachineEngine that fuses the reflector and every rotor to the left
+ *  of the two rightmost into a single permutation.  That permutation
+ *  changes only when one of those rotors moves, which is rare, so most
+ *  characters take five table lookups: the two rightmost rotors (the
+ *  plugboard being folded into the rightmost), the fused permutation and
+ *  the two rightmost rotors again.
+ *  @author Kevin Chen
+ */
+class FusedEngine extends CompiledEngine {
+
+    /** An engine compiled from the configuration of CONFIG. */
+    FusedEngine(Machine config) {
+        super(config);
+        _split = Math.max(1, _slots - 2);
+        _inner = new int[_size];
+    }
+
+    @Override
+    void compile() {
+        _stale = true;
+    }
+
+    @Override
+    void positionsChanged() {
+        _stale = true;
+    }
+
+    @Override
+    int convert(int c) {
+        if (step() < _split || _stale) {
+            fuse();
+        }
+        int n = _size, last = _slots - 1;
+        for (int i = last; i >= _split; i--) {
+            c = _forward[i][_posn[i] * n + c];
+        }
+        c = _inner[c];
+        for (int i = _split; i <= last; i++) {
+            c = _backward[i][_posn[i] * n + c];
+        }
+        return c;
+    }
+
+    /** Recompute _inner from the current positions of the rotors in
+     *  slots 0 .. _split - 1. */
+    private void fuse() {
+        int n = _size;
+        for (int x = 0; x < n; x++) {
+            int c = x;
+            for (int i = _split - 1; i >= 0; i--) {
+                c = _forward[i][_posn[i] * n + c];
+            }
+            for (int i = 1; i < _split; i++) {
+                c = _backward[i][_posn[i] * n + c];
+            }
+            _inner[x] = c;
+        }
+        _stale = false;
+    }
+
+    /** The leftmost slot not fused into _inner. */
+    private final int _split;
+
+    /** The fused permutation of the rotors in slots 0 .. _split - 1. */
+    private final int[] _inner;
+
+    /** True iff _inner is out of date. */
+    private boolean _stale;
+}
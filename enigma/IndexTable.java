@@ -0,0 +1,144 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** A fixed-length table of small integers (alphabet indices, or -1),
+ *  stored in the narrowest primitive array that can hold them: byte[]
+ *  for alphabets of up to 127 characters, short[] for up to 32767, and
+ *  int[] beyond that.
+ *  @author Kevin Chen
+ */
+abstract class IndexTable {
+
+    /** Return a table of LENGTH entries, all -1, able to hold values in
+     *  the range -1 .. MAXVALUE. */
+    static IndexTable create(int length, int maxValue) {
+        IndexTable result;
+        if (maxValue <= Byte.MAX_VALUE) {
+            result = new Bytes(length);
+        } else if (maxValue <= Short.MAX_VALUE) {
+            result = new Shorts(length);
+        } else {
+            result = new Ints(length);
+        }
+        result.fill(-1);
+        return result;
+    }
+
+    /** Return the number of bytes per entry in a table created to hold
+     *  values up to MAXVALUE. */
+    static int entrySize(int maxValue) {
+        if (maxValue <= Byte.MAX_VALUE) {
+            return Byte.BYTES;
+        } else if (maxValue <= Short.MAX_VALUE) {
+            return Short.BYTES;
+        } else {
+            return Integer.BYTES;
+        }
+    }
+
+    /** Return entry K. */
+    abstract int get(int k);
+
+    /** Set entry K to V. */
+    abstract void set(int k, int v);
+
+    /** Return my number of entries. */
+    abstract int length();
+
+    /** Set all my entries to V. */
+    abstract void fill(int v);
+
+    /** A table backed by a byte[]. */
+    private static final class Bytes extends IndexTable {
+        /** A table of LENGTH entries. */
+        Bytes(int length) {
+            _data = new byte[length];
+        }
+
+        @Override
+        int get(int k) {
+            return _data[k];
+        }
+
+        @Override
+        void set(int k, int v) {
+            _data[k] = (byte) v;
+        }
+
+        @Override
+        int length() {
+            return _data.length;
+        }
+
+        @Override
+        void fill(int v) {
+            Arrays.fill(_data, (byte) v);
+        }
+
+        /** My entries. */
+        private final byte[] _data;
+    }
+
+    /** A table backed by a short[]. */
+    private static final class Shorts extends IndexTable {
+        /** A table of LENGTH entries. */
+        Shorts(int length) {
+            _data = new short[length];
+        }
+
+        @Override
+        int get(int k) {
+            return _data[k];
+        }
+
+        @Override
+        void set(int k, int v) {
+            _data[k] = (short) v;
+        }
+
+        @Override
+        int length() {
+            return _data.length;
+        }
+
+        @Override
+        void fill(int v) {
+            Arrays.fill(_data, (short) v);
+        }
+
+        /** My entries. */
+        private final short[] _data;
+    }
+
+    /** A table backed by an int[]. */
+    private static final class Ints extends IndexTable {
+        /** A table of LENGTH entries. */
+        Ints(int length) {
+            _data = new int[length];
+        }
+
+        @Override
+        int get(int k) {
+            return _data[k];
+        }
+
+        @Override
+        void set(int k, int v) {
+            _data[k] = v;
+        }
+
+        @Override
+        int length() {
+            return _data.length;
+        }
+
+        @Override
+        void fill(int v) {
+            Arrays.fill(_data, v);
+        }
+
+        /** My entries. */
+        private final int[] _data;
+    }
+}
@@ -0,0 +1,157 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+
+import static enigma.EnigmaException.*;
+
+/** A source of lines read from a stream of bytes, which keeps track of the
+ *  byte offset in the stream at which the next line starts.  Lines are
+ *  terminated by "\n", "\r\n" or "\r", as for Scanner.nextLine, and are
+ *  decoded using the platform's default charset.  Bytes are read through
+ *  a channel into a reusable direct buffer.
+ *  @author Kevin Chen
+ */
+class LineReader {
+
+    /** A reader of lines from IN, whose first byte is at offset 0. */
+    LineReader(InputStream in) {
+        this(Channels.newChannel(in), 0);
+    }
+
+    /** A reader of lines from IN, whose first byte is at offset OFFSET. */
+    LineReader(ReadableByteChannel in, long offset) {
+        _in = in;
+        _buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _buf.limit(0);
+        _line = new byte[LINE_SIZE];
+        _offset = offset;
+    }
+
+    /** Return a reader of lines from the file named NAME, positioned at
+     *  byte OFFSET of the file. */
+    static LineReader open(String name, long offset) {
+        try {
+            FileChannel in = FileChannel.open(Paths.get(name));
+            if (offset > 0) {
+                in.position(offset);
+            }
+            return new LineReader(in, offset);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return true iff there is another line to read. */
+    boolean hasNextLine() {
+        return fill();
+    }
+
+    /** Return the next line, without its terminator, or null if there
+     *  are no more lines. */
+    String nextLine() {
+        int len = readLine();
+        return len < 0 ? null : new String(_line, 0, len);
+    }
+
+    /** Read the next line, without its terminator, into lineBytes(),
+     *  returning its length in bytes, or -1 if there are no more lines. */
+    int readLine() {
+        if (!fill()) {
+            return -1;
+        }
+        int len = 0;
+        while (fill()) {
+            int pos = _buf.position(), limit = _buf.limit();
+            int end;
+            for (end = pos; end < limit; end += 1) {
+                byte b = _buf.get(end);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+            }
+            int n = end - pos;
+            if (len + n > _line.length) {
+                byte[] bigger = new byte[Math.max(2 * _line.length, len + n)];
+                System.arraycopy(_line, 0, bigger, 0, len);
+                _line = bigger;
+            }
+            _buf.get(_line, len, n);
+            len += n;
+            _offset += n;
+            if (end < limit) {
+                byte b = _buf.get();
+                _offset += 1;
+                if (b == '\r' && fill() && _buf.get(_buf.position()) == '\n') {
+                    _buf.get();
+                    _offset += 1;
+                }
+                return len;
+            }
+        }
+        return len;
+    }
+
+    /** Return the buffer holding the bytes of the line most recently read
+     *  by readLine.  Its contents change on the next call. */
+    byte[] lineBytes() {
+        return _line;
+    }
+
+    /** Return the offset in my stream of the start of the next line. */
+    long offset() {
+        return _offset;
+    }
+
+    /** Close my stream. */
+    void close() {
+        try {
+            _in.close();
+        } catch (IOException excp) {
+            throw error("could not close input: %s", excp.getMessage());
+        }
+    }
+
+    /** Ensure that there is at least one unread byte in my buffer, if
+     *  possible.  Return false iff my stream is exhausted. */
+    private boolean fill() {
+        if (_buf.hasRemaining()) {
+            return true;
+        }
+        try {
+            int n;
+            _buf.clear();
+            do {
+                n = _in.read(_buf);
+            } while (n == 0);
+            _buf.flip();
+            return n > 0;
+        } catch (IOException excp) {
+            throw error("could not read input: %s", excp.getMessage());
+        }
+    }
+
+    /** Size of my read buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Initial size of my line buffer. */
+    private static final int LINE_SIZE = 256;
+
+    /** The channel I read. */
+    private final ReadableByteChannel _in;
+
+    /** Bytes read from _in; those between its position and limit are
+     *  unread. */
+    private final ByteBuffer _buf;
+
+    /** The bytes of the current line. */
+    private byte[] _line;
+
+    /** Offset in my stream of the next unread byte. */
+    private long _offset;
+}
@@ -0,0 +1,507 @@
+package enigma;
+
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import static enigma.EnigmaException.*;
+
+/** A soak test: drives machines with synthetic traffic for a given time
+ *  at each of several levels of concurrency, and reports throughput,
+ *  latency percentiles per message, garbage collection and allocation.
+ *
+ *  The traffic for each thread is generated from the configuration: a
+ *  stream of messages, each starting with a random valid settings line
+ *  (sometimes with a plugboard), with message lengths spread over
+ *  several orders of magnitude, lines of varied length in upper and
+ *  lower case with spaces, and occasional blank lines.  Each thread has
+ *  its own machine and replays its stream as Main would process it,
+ *  discarding the output.
+ *  @author Kevin Chen
+ */
+class LoadTest {
+
+    /** Run the soak test with configuration ARGS[0] for ARGS[1] seconds
+     *  (default 10) at each number of threads in the comma-separated list
+     *  ARGS[2] (default 1,2,4,8).  The engine is chosen by enigma.engine
+     *  as for Main, and enigma.load.seed seeds the traffic. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 1 || args.length > 3) {
+                throw error("Usage: LoadTest CONFIG [SECONDS [THREADS,...]]");
+            }
+            long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+            String[] levels = (args.length > 2 ? args[2] : "1,2,4,8")
+                .split(",");
+            LoadTest test = new LoadTest(args[0],
+                                         Long.getLong(SEED_PROPERTY, 1));
+            test.run(1, WARM_UP_SECONDS);
+            System.out.printf("%7s %12s %9s %9s %9s %9s %9s %6s %8s %8s %9s%n",
+                              "threads", "chars", "Mchars/s", "msgs/s",
+                              "p50 us", "p99 us", "p999 us", "GCs",
+                              "GC ms", "max ms", "bytes/ch");
+            for (String level : levels) {
+                test.run(Integer.parseInt(level.trim()), seconds)
+                    .print();
+            }
+            return;
+        } catch (NumberFormatException excp) {
+            System.err.printf("Error: bad number: %s%n", excp.getMessage());
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** A soak test of machines configured by the file named CONFIG, with
+     *  traffic generated from SEED. */
+    LoadTest(String config, long seed) {
+        _config = config;
+        _seed = seed;
+        LineReader in = LineReader.open(config, 0);
+        try {
+            _alphabet = in.nextLine().trim().codePoints().toArray();
+            String[] counts = in.nextLine().trim().split("\\s+");
+            _numRotors = Integer.parseInt(counts[0]);
+            _pawls = Integer.parseInt(counts[1]);
+            for (String line = in.nextLine(); line != null;
+                 line = in.nextLine()) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 2 || fields[0].startsWith("(")) {
+                    continue;
+                } else if (fields[1].startsWith("M")) {
+                    _moving.add(fields[0]);
+                } else if (fields[1].startsWith("N")) {
+                    _fixed.add(fields[0]);
+                } else {
+                    _reflectors.add(fields[0]);
+                }
+            }
+        } catch (RuntimeException excp) {
+            throw error("bad configuration %s", config);
+        } finally {
+            in.close();
+        }
+        if (_reflectors.isEmpty() || _moving.size() < _pawls
+            || _fixed.size() < _numRotors - 1 - _pawls) {
+            throw error("configuration has too few rotors for load testing");
+        }
+    }
+
+    /** Return the results of driving THREADS machines at once for SECONDS
+     *  seconds. */
+    Result run(int threads, long seconds) {
+        Worker[] workers = new Worker[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker(traffic(new Random(_seed + t)));
+        }
+        GcWatch gc = new GcWatch();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        for (Worker worker : workers) {
+            worker.start(deadline);
+        }
+        for (Worker worker : workers) {
+            worker.finish();
+        }
+        long elapsed = System.nanoTime() - start;
+        gc.stop();
+
+        Result result = new Result();
+        result.threads = threads;
+        result.nanos = elapsed;
+        int messages = 0;
+        for (Worker worker : workers) {
+            result.chars += worker._chars;
+            result.allocated += worker._allocated;
+            messages += worker._messages;
+        }
+        long[] latencies = new long[messages];
+        int k = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker._latencies, 0, latencies, k,
+                             worker._messages);
+            k += worker._messages;
+        }
+        Arrays.sort(latencies);
+        result.messages = messages;
+        result.p50 = percentile(latencies, 0.50);
+        result.p99 = percentile(latencies, 0.99);
+        result.p999 = percentile(latencies, 0.999);
+        result.gcCount = gc._count;
+        result.gcMillis = gc._millis;
+        result.maxPause = gc._maxPause.get();
+        return result;
+    }
+
+    /** Return a stream of synthetic traffic, as lines, generated by
+     *  RANDOM, of about TRAFFIC_CHARS characters. */
+    private String[] traffic(Random random) {
+        List<String> lines = new ArrayList<>();
+        long chars = 0;
+        while (chars < TRAFFIC_CHARS) {
+            lines.add(settings(random));
+            int length = (int) Math.min(MAX_MESSAGE,
+                                        Math.exp(random.nextDouble()
+                                                 * Math.log(MAX_MESSAGE)));
+            chars += length;
+            while (length > 0) {
+                if (random.nextInt(BLANK_ODDS) == 0) {
+                    lines.add("");
+                }
+                int n = Math.min(length, 1 + random.nextInt(MAX_LINE));
+                lines.add(text(random, n));
+                length -= n;
+            }
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    /** Return a random valid settings line, using RANDOM. */
+    private String settings(Random random) {
+        StringBuilder line = new StringBuilder("* ");
+        line.append(pick(random, _reflectors, null));
+        List<String> used = new ArrayList<>();
+        for (int i = 1; i < _numRotors; i++) {
+            List<String> kind = i < _numRotors - _pawls ? _fixed : _moving;
+            String name = pick(random, kind, used);
+            used.add(name);
+            line.append(' ').append(name);
+        }
+        line.append(' ');
+        for (int i = 1; i < _numRotors; i++) {
+            line.appendCodePoint(_alphabet[random.nextInt(_alphabet.length)]);
+        }
+        if (random.nextBoolean()) {
+            int[] chars = _alphabet.clone();
+            for (int i = chars.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int c = chars[i];
+                chars[i] = chars[j];
+                chars[j] = c;
+            }
+            int pairs = random.nextInt(Math.min(MAX_PAIRS,
+                                                chars.length / 2) + 1);
+            for (int i = 0; i < pairs; i++) {
+                line.append(" (").appendCodePoint(chars[2 * i])
+                    .appendCodePoint(chars[2 * i + 1]).append(')');
+            }
+        }
+        return line.toString();
+    }
+
+    /** Return LENGTH random alphabet characters, some in lower case and
+     *  in groups separated by spaces, using RANDOM. */
+    private String text(Random random, int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0 && random.nextInt(GROUP) == 0) {
+                result.append(' ');
+            }
+            int c = _alphabet[random.nextInt(_alphabet.length)];
+            int lower = Character.toLowerCase(c);
+            result.appendCodePoint(random.nextBoolean()
+                                   && Character.toUpperCase(lower) == c
+                                   ? lower : c);
+        }
+        return result.toString();
+    }
+
+    /** Return a random member of NAMES not in USED (if not null), using
+     *  RANDOM. */
+    private static String pick(Random random, List<String> names,
+                               List<String> used) {
+        while (true) {
+            String name = names.get(random.nextInt(names.size()));
+            if (used == null || !used.contains(name)) {
+                return name;
+            }
+        }
+    }
+
+    /** Return the P'th quantile of the sorted VALUES, or 0 if empty. */
+    private static long percentile(long[] values, double p) {
+        if (values.length == 0) {
+            return 0;
+        }
+        int k = (int) Math.ceil(p * values.length) - 1;
+        return values[Math.max(0, Math.min(k, values.length - 1))];
+    }
+
+    /** A thread that replays a stream of traffic through its own machine
+     *  until a deadline. */
+    private class Worker extends Thread {
+
+        /** A worker that replays LINES. */
+        Worker(String[] lines) {
+            _lines = lines;
+            _machine = Main.readConfig(LineReader.open(_config, 0));
+            _buffer = new int[MAX_LINE * 2];
+            _latencies = new long[INITIAL_LATENCIES];
+            setDaemon(true);
+        }
+
+        /** Start replaying until DEADLINE, as given by System.nanoTime. */
+        void start(long deadline) {
+            _deadline = deadline;
+            start();
+        }
+
+        /** Wait for me to stop, and report any error I met. */
+        void finish() {
+            try {
+                join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw error("interrupted");
+            }
+            if (_failure != null) {
+                throw _failure;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                long allocated = allocated(threads);
+                OutputBuffer out =
+                    new OutputBuffer(OutputStream.nullOutputStream(), 0);
+                Formatter formatter = Formatter.forName(null);
+                long messageStart = -1;
+                for (int k = 0; System.nanoTime() < _deadline; k++) {
+                    String line = _lines[k % _lines.length];
+                    if (line.startsWith("*")) {
+                        long now = System.nanoTime();
+                        if (messageStart >= 0) {
+                            record(now - messageStart);
+                        }
+                        messageStart = now;
+                        Main.setUp(_machine, line);
+                    } else if (line.isEmpty()) {
+                        out.newline();
+                    } else {
+                        convertLine(line, formatter, out);
+                    }
+                }
+                out.flush();
+                _allocated = allocated(threads) - allocated;
+            } catch (RuntimeException excp) {
+                _failure = excp;
+            }
+        }
+
+        /** Convert LINE as Main does, writing it to OUT laid out by
+         *  FORMATTER. */
+        private void convertLine(String line, Formatter formatter,
+                                 OutputBuffer out) {
+            int len = 0;
+            for (int i = 0; i < line.length(); ) {
+                int c = line.codePointAt(i);
+                if (!Character.isWhitespace(c)) {
+                    _buffer[len] = Character.toUpperCase(c);
+                    len += 1;
+                }
+                i += Character.charCount(c);
+            }
+            _machine.convert(_buffer, 0, len);
+            formatter.format(_buffer, len, line, out);
+            _chars += len;
+        }
+
+        /** Record a message that took NANOS nanoseconds. */
+        private void record(long nanos) {
+            if (_messages == _latencies.length) {
+                _latencies = Arrays.copyOf(_latencies, 2 * _messages);
+            }
+            _latencies[_messages] = nanos / 1000;
+            _messages += 1;
+        }
+
+        /** Return the number of bytes allocated by this thread so far,
+         *  according to THREADS, or 0 if it does not say. */
+        private long allocated(ThreadMXBean threads) {
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(getId());
+            }
+            return 0;
+        }
+
+        /** The traffic I replay. */
+        private final String[] _lines;
+
+        /** My machine. */
+        private final MachineEngine _machine;
+
+        /** Code points of the line being converted. */
+        private final int[] _buffer;
+
+        /** Time at which to stop. */
+        private long _deadline;
+
+        /** Latency of each message in microseconds. */
+        private long[] _latencies;
+
+        /** Number of messages completed. */
+        private int _messages;
+
+        /** Number of characters converted. */
+        private long _chars;
+
+        /** Bytes allocated while replaying. */
+        private long _allocated;
+
+        /** The error that stopped me, or null. */
+        private volatile RuntimeException _failure;
+    }
+
+    /** Collection counts and times of the garbage collectors between
+     *  creation and stop, and the longest single pause reported. */
+    private static class GcWatch {
+
+        /** Start watching. */
+        GcWatch() {
+            NotificationListener listener = (notification, handback) -> {
+                if (notification.getType().equals(
+                        GarbageCollectionNotificationInfo
+                        .GARBAGE_COLLECTION_NOTIFICATION)) {
+                    long pause = GarbageCollectionNotificationInfo
+                        .from((CompositeData) notification.getUserData())
+                        .getGcInfo().getDuration();
+                    _maxPause.accumulateAndGet(pause, Math::max);
+                }
+            };
+            for (GarbageCollectorMXBean bean
+                     : ManagementFactory.getGarbageCollectorMXBeans()) {
+                _count -= bean.getCollectionCount();
+                _millis -= bean.getCollectionTime();
+                if (bean instanceof NotificationEmitter) {
+                    ((NotificationEmitter) bean)
+                        .addNotificationListener(listener, null, null);
+                    _emitters.add((NotificationEmitter) bean);
+                }
+            }
+            _listener = listener;
+        }
+
+        /** Stop watching. */
+        void stop() {
+            for (GarbageCollectorMXBean bean
+                     : ManagementFactory.getGarbageCollectorMXBeans()) {
+                _count += bean.getCollectionCount();
+                _millis += bean.getCollectionTime();
+            }
+            for (NotificationEmitter emitter : _emitters) {
+                try {
+                    emitter.removeNotificationListener(_listener);
+                } catch (ListenerNotFoundException excp) {
+                    /* Already gone. */
+                }
+            }
+        }
+
+        /** Collections during the watch. */
+        private long _count;
+
+        /** Milliseconds spent collecting during the watch. */
+        private long _millis;
+
+        /** Longest pause reported, in milliseconds. */
+        private final AtomicLong _maxPause = new AtomicLong();
+
+        /** The collectors I listen to. */
+        private final List<NotificationEmitter> _emitters = new ArrayList<>();
+
+        /** My listener. */
+        private final NotificationListener _listener;
+    }
+
+    /** The results of one run. */
+    static class Result {
+
+        /** Print me as a row of the table printed by main. */
+        void print() {
+            double seconds = nanos / 1e9;
+            System.out.printf("%7d %12d %9.2f %9.0f %9d %9d %9d %6d %8d %8d "
+                              + "%9.3f%n", threads, chars,
+                              chars / seconds / 1e6, messages / seconds,
+                              p50, p99, p999, gcCount, gcMillis, maxPause,
+                              chars == 0 ? 0.0 : (double) allocated / chars);
+        }
+
+        /** Number of threads. */
+        int threads;
+        /** Elapsed time in nanoseconds. */
+        long nanos;
+        /** Characters converted. */
+        long chars;
+        /** Messages completed. */
+        int messages;
+        /** Latency percentiles per message, in microseconds. */
+        long p50, p99, p999;
+        /** Garbage collections. */
+        long gcCount;
+        /** Time spent collecting, in milliseconds. */
+        long gcMillis;
+        /** Longest collection pause, in milliseconds. */
+        long maxPause;
+        /** Bytes allocated by the worker threads. */
+        long allocated;
+    }
+
+    /** Name of the system property seeding the traffic. */
+    static final String SEED_PROPERTY = "enigma.load.seed";
+
+    /** Seconds of single-threaded warm-up before measuring. */
+    private static final long WARM_UP_SECONDS = 2;
+
+    /** Approximate number of characters of traffic per thread. */
+    private static final long TRAFFIC_CHARS = 4 << 20;
+
+    /** Longest message, in characters. */
+    private static final int MAX_MESSAGE = 50_000;
+
+    /** Longest line, in characters. */
+    private static final int MAX_LINE = 120;
+
+    /** One line in BLANK_ODDS is preceded by a blank line. */
+    private static final int BLANK_ODDS = 20;
+
+    /** Characters are followed by a space one time in GROUP. */
+    private static final int GROUP = 5;
+
+    /** Most plugboard pairs in a settings line. */
+    private static final int MAX_PAIRS = 10;
+
+    /** Initial capacity for latencies per worker. */
+    private static final int INITIAL_LATENCIES = 1024;
+
+    /** Name of the configuration file. */
+    private final String _config;
+
+    /** Seed for the traffic. */
+    private final long _seed;
+
+    /** The characters of the configuration's alphabet. */
+    private final int[] _alphabet;
+
+    /** Numbers of rotor slots and pawls in the configuration. */
+    private final int _numRotors, _pawls;
+
+    /** Names of the configuration's rotors, by kind. */
+    private final List<String> _reflectors = new ArrayList<>(),
+        _moving = new ArrayList<>(), _fixed = new ArrayList<>();
+}
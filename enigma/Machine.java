@@ -5,16 +5,26 @@ import java.util.Collection;
 
 import static enigma.EnigmaException.*;
 
-/** Class that represents a complete enigma machine.
+/** Class that represents a complete enigma machine.  This is the
+ *  reference MachineEngine, which converts by consulting each Rotor in
+ *  turn.
  *  @author Kevin Chen
  */
-class Machine {
+class Machine extends MachineEngine {
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, new RotorCatalog(alpha, allRotors));
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS holds all the
+     *  available rotors, which are built as they are first inserted. */
+    Machine(Alphabet alpha, int numRotors, int pawls,
+            RotorCatalog allRotors) {
         _alphabet = alpha;
         if (numRotors > 1) {
             _numRotors = new Rotor[numRotors];
@@ -30,12 +40,20 @@ class Machine {
         _allRotors = allRotors;
     }
 
-        /** Return the number of rotor slots I have. */
+    /** Return the number of rotor slots I have. */
+    @Override
     int numRotors() {
         return _numRotors.length;
     }
 
+    /** Return my alphabet. */
+    @Override
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
     /** Return the number pawls (and thus rotating rotors) I have. */
+    @Override
     int numPawls() {
         return _pawls;
     }
@@ -43,13 +61,12 @@ class Machine {
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
+    @Override
     void insertRotors(String[] rotors) {
         for (int i = 0; i < rotors.length; i++) {
-            for (Rotor x : _allRotors) {
-                if (x.name().equalsIgnoreCase(rotors[i])) {
-                    _numRotors[i] = x;
-                    break;
-                }
+            Rotor x = _allRotors.get(rotors[i]);
+            if (x != null) {
+                _numRotors[i] = x;
             }
             if (_numRotors[i] == null) {
                 throw error("Invalid rotor.");
@@ -67,62 +84,141 @@ class Machine {
         if (numMove > _pawls) {
             throw error("Not enough pawls for moving rotors!");
         }
+        if (_folded != _numRotors[_numRotors.length - 1]) {
+            foldPlugboard();
+        }
     }
 
     /** Set my rotors according to SETTING, which must be a string of four
      *  upper-case letters. The first letter refers to the leftmost
      *  rotor setting (not counting the reflector).  */
+    @Override
     void setRotors(String setting) {
-        boolean upper = setting == setting.toUpperCase();
-        if (!upper || setting.length() != _numRotors.length - 1) {
+        boolean upper = setting.equals(setting.toUpperCase());
+        int[] check = setting.codePoints().toArray();
+        if (!upper || check.length != _numRotors.length - 1) {
             throw error("Input must be Rotor-1 upper-case letters");
         }
-        char[] check = setting.toCharArray();
-        for (char x : check) {
-            if (!_alphabet.contains(x)) {
+        for (int x : check) {
+            if (_alphabet.lookup(x) < 0) {
                 throw error("Initial setting character not in alphabet.");
             }
         }
-        for (int i = 1; i < setting.length() + 1; i++) {
-            _numRotors[i].set(setting.charAt(i - 1));
+        for (int i = 1; i < check.length + 1; i++) {
+            _numRotors[i].set(_alphabet.lookup(check[i - 1]));
+        }
+    }
+
+    /** Return the settings of the rotors in each of my slots, numbering
+     *  slots from 0 (the reflector). */
+    @Override
+    int[] positions() {
+        int[] result = new int[_numRotors.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = _numRotors[i].setting();
+        }
+        return result;
+    }
+
+    /** Set the rotors in my slots to the settings POSITIONS, as returned
+     *  by positions(). */
+    @Override
+    void setPositions(int[] positions) {
+        if (positions.length != _numRotors.length) {
+            throw error("wrong number of rotor positions");
+        }
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] < 0 || positions[i] >= _alphabet.size()) {
+                throw error("rotor position out of range");
+            }
+            _numRotors[i].set(positions[i]);
         }
     }
 
     /** Set the plugboard to PLUGBOARD. */
+    @Override
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
+        if (_numRotors[_numRotors.length - 1] != null) {
+            foldPlugboard();
+        }
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
+    @Override
     int convert(int c) {
         advanceAll();
-        if (_plugboard != null) {
-            c = _plugboard.permute(c);
+        return encipher(c);
+    }
+
+    /** Return the permutation I apply at my current rotor positions,
+     *  without advancing, as an array mapping each alphabet index to its
+     *  conversion. */
+    int[] permutation() {
+        int[] result = new int[_alphabet.size()];
+        for (int c = 0; c < result.length; c++) {
+            result[c] = encipher(c);
         }
-        for (int i = _numRotors.length - 1; i >= 0; i--) {
+        return result;
+    }
+
+    /** Return the conversion of input index C at my current rotor
+     *  positions. */
+    private int encipher(int c) {
+        int offset = _numRotors[_numRotors.length - 1].setting() * _stride;
+        c = _entry.get(offset + c);
+        for (int i = _unfolded; i >= 0; i--) {
             c = _numRotors[i].convertForward(c);
         }
-        for (int i = 1; i < _numRotors.length; i++) {
+        for (int i = 1; i <= _unfolded; i++) {
             c = _numRotors[i].convertBackward(c);
         }
-        if (_plugboard != null) {
-            c = _plugboard.permute(c);
-        }
-        return c;
+        return _exit.get(offset + c);
     }
 
-    /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
-    String convert(String msg) {
-        String result = "";
-        for (int i = 0; i < msg.length(); i++) {
-            result += _alphabet.toChar(convert(_alphabet.toInt(msg.charAt(i))));
+    /** Build _entry and _exit for the rotor now in the rightmost slot
+     *  and the current plugboard.  If they would be too large, they hold
+     *  the plugboard alone, and the rightmost rotor is left unfolded. */
+    private void foldPlugboard() {
+        Rotor right = _numRotors[_numRotors.length - 1];
+        int n = _alphabet.size();
+        _folded = right;
+        if ((long) n * n * IndexTable.entrySize(n - 1) > Rotor.TABLE_LIMIT) {
+            _entry = IndexTable.create(n, n - 1);
+            for (int p = 0; p < n; p++) {
+                _entry.set(p, _plugboard == null ? p : _plugboard.permute(p));
+            }
+            _exit = _entry;
+            _stride = 0;
+            _unfolded = _numRotors.length - 1;
+            return;
         }
-        return result;
+        _entry = IndexTable.create(n * n, n - 1);
+        _exit = IndexTable.create(n * n, n - 1);
+        for (int s = 0; s < n; s++) {
+            for (int p = 0; p < n; p++) {
+                int q = _plugboard == null ? p : _plugboard.permute(p);
+                _entry.set(s * n + p, right.convertForward(q, s));
+                int e = right.convertBackward(p, s);
+                _exit.set(s * n + p,
+                          _plugboard == null ? e : _plugboard.permute(e));
+            }
+        }
+        _stride = n;
+        _unfolded = _numRotors.length - 2;
     }
 
+    /** Return the catalog of rotors from which I choose. */
+    RotorCatalog catalog() {
+        return _allRotors;
+    }
+
+    /** Return the rotor in slot K. */
+    Rotor rotor(int k) {
+        return _numRotors[k];
+    }
 
     /** Advances all rotors according to notch position. */
     void advanceAll() {
@@ -151,10 +247,31 @@ class Machine {
     /** Number of pawls in the machine. */
     private int _pawls;
 
-    /** Collection of all rotors from which to choose. */
-    private Collection<Rotor> _allRotors;
+    /** Catalog of all rotors from which to choose. */
+    private RotorCatalog _allRotors;
 
     /** Permutation that occurs once in the beginning
      * and again at the end. */
     private Permutation _plugboard;
+
+    /** The rightmost rotor for which _entry and _exit were built, or null
+     *  if none has been inserted. */
+    private Rotor _folded;
+
+    /** Entry S * _stride + P is the rightmost rotor's forward conversion
+     *  of the plugboard's image of P at setting S, or just that image if
+     *  _stride is 0. */
+    private IndexTable _entry;
+
+    /** Entry S * _stride + E is the plugboard's image of the rightmost
+     *  rotor's backward conversion of E at setting S, or just the image of
+     *  E if _stride is 0. */
+    private IndexTable _exit;
+
+    /** The alphabet size if the rightmost rotor is folded into _entry and
+     *  _exit, and otherwise 0. */
+    private int _stride;
+
+    /** The slot of the rightmost rotor that encipher consults itself. */
+    private int _unfolded;
 }
@@ -0,0 +1,93 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The operations of an Enigma machine, independent of how conversion is
+ *  carried out.  Machine is the reference implementation; the others
+ *  compile its configuration into faster forms.  Implementations are
+ *  created by MachineEngines.
+ *  @author Kevin Chen
+ */
+abstract class MachineEngine {
+
+    /** Return my alphabet. */
+    abstract Alphabet alphabet();
+
+    /** Return the number of rotor slots I have. */
+    abstract int numRotors();
+
+    /** Return the number pawls (and thus rotating rotors) I have. */
+    abstract int numPawls();
+
+    /** Set my rotor slots to the rotors named ROTORS from my set of
+     *  available rotors (ROTORS[0] names the reflector). */
+    abstract void insertRotors(String[] rotors);
+
+    /** Set my rotors according to SETTING, a string of numRotors() - 1
+     *  characters giving the settings of the rotors after the reflector. */
+    abstract void setRotors(String setting);
+
+    /** Set the plugboard to PLUGBOARD. */
+    abstract void setPlugboard(Permutation plugboard);
+
+    /** Return the settings of the rotors in each of my slots, numbering
+     *  slots from 0 (the reflector). */
+    abstract int[] positions();
+
+    /** Set the rotors in my slots to the settings POSITIONS, as returned
+     *  by positions(). */
+    abstract void setPositions(int[] positions);
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  the machine. */
+    abstract int convert(int c);
+
+    /** Convert the alphabet indices BUF[START .. END-1] in place, updating
+     *  the state of the rotors accordingly. */
+    void convertIndices(int[] buf, int start, int end) {
+        for (int i = start; i < end; i++) {
+            buf[i] = convert(buf[i]);
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG, updating the state of
+     *  the rotors accordingly. */
+    String convert(String msg) {
+        int[] buf = msg.codePoints().toArray();
+        convert(buf, 0, buf.length);
+        return new String(buf, 0, buf.length);
+    }
+
+    /** Convert the code points BUF[START .. END-1] in place, updating the
+     *  state of the rotors accordingly.  All the characters must be in
+     *  my alphabet. */
+    void convert(int[] buf, int start, int end) {
+        Alphabet alphabet = alphabet();
+        for (int i = start; i < end; i++) {
+            int c = alphabet.lookup(buf[i]);
+            if (c < 0) {
+                throw error("character '%s' not in alphabet",
+                            new String(buf, i, 1));
+            }
+            buf[i] = c;
+        }
+        convertIndices(buf, start, end);
+        for (int i = start; i < end; i++) {
+            buf[i] = alphabet.toCodePoint(buf[i]);
+        }
+    }
+
+    /** Convert those code points of BUF[START .. END-1] that are in my
+     *  alphabet in place, leaving the others unchanged and advancing the
+     *  rotors only for converted characters. */
+    void convertPassThrough(int[] buf, int start, int end) {
+        Alphabet alphabet = alphabet();
+        for (int i = start; i < end; i++) {
+            int c = alphabet.lookup(buf[i]);
+            if (c >= 0) {
+                buf[i] = alphabet.toCodePoint(convert(c));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Creation of MachineEngines.  The engine is chosen by the system
+ *  property enigma.engine, whose value is one of NAMES, or "auto" (the
+ *  default) to choose according to the size of the alphabet and the
+ *  expected length of the input.
+ *  @author Kevin Chen
+ */
+class MachineEngines {
+
+    /** Name of the system property that selects an engine. */
+    static final String ENGINE_PROPERTY = "enigma.engine";
+
+    /** The names of the available engines. */
+    static final String[] NAMES = {
+        "reference", "table", "fused", "batch", "codegen", "atlas"
+    };
+
+    /** Return a new engine that uses the configuration of CONFIG, which
+     *  it takes over.  The engine is chosen by ENGINE_PROPERTY. */
+    static MachineEngine create(Machine config) {
+        return create(config, -1);
+    }
+
+    /** Return a new engine that uses the configuration of CONFIG, which
+     *  it takes over, to convert about INPUTLENGTH bytes of input (or an
+     *  unknown amount, if INPUTLENGTH is negative).  The engine is chosen
+     *  by ENGINE_PROPERTY. */
+    static MachineEngine create(Machine config, long inputLength) {
+        return create(System.getProperty(ENGINE_PROPERTY, "auto"), config,
+                      inputLength);
+    }
+
+    /** Return a new engine of the kind named NAME that uses the
+     *  configuration of CONFIG, which it takes over.  The compiled
+     *  engines hold tables of size * size entries for each rotor, so
+     *  when one such table would exceed Rotor.TABLE_LIMIT bytes, CONFIG
+     *  itself is used instead. */
+    static MachineEngine create(String name, Machine config) {
+        return create(name, config, -1);
+    }
+
+    /** Return a new engine of the kind named NAME that uses the
+     *  configuration of CONFIG, which it takes over, to convert about
+     *  INPUTLENGTH bytes of input (or an unknown amount, if INPUTLENGTH
+     *  is negative), as for create(NAME, CONFIG). */
+    private static MachineEngine create(String name, Machine config,
+                                        long inputLength) {
+        long size = config.alphabet().size();
+        if (size * size * Integer.BYTES > Rotor.TABLE_LIMIT
+            && !name.equals("auto") && Arrays.asList(NAMES).contains(name)) {
+            return config;
+        }
+        switch (name) {
+        case "auto":
+            return create(choose(config, inputLength), config);
+        case "reference":
+            return config;
+        case "table":
+            return new TableEngine(config);
+        case "fused":
+            return new FusedEngine(config);
+        case "batch":
+            return new BatchEngine(config);
+        case "codegen":
+            return CodegenEngine.create(config);
+        case "atlas":
+            return new AtlasEngine(config);
+        default:
+            throw error("unknown engine: %s", name);
+        }
+    }
+
+    /** Return the name of the engine to use for CONFIG on about
+     *  INPUTLENGTH bytes of input (unknown if negative).  The compiled
+     *  engines hold a table of size * size entries for each rotor they
+     *  compile, so they are used only when that is small, and only when
+     *  the input is long enough to repay filling a table for each slot:
+     *  a shorter input is converted sooner by CONFIG itself. */
+    private static String choose(Machine config, long inputLength) {
+        long size = config.alphabet().size();
+        if (size * size > COMPILE_LIMIT
+            || (inputLength >= 0
+                && inputLength < size * size * config.numRotors())) {
+            return "reference";
+        }
+        return "fused";
+    }
+
+    /** Largest table, in entries, that auto will have compiled. */
+    private static final long COMPILE_LIMIT = 1 << 16;
+}
@@ -0,0 +1,469 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Flow;
+
+import static enigma.TestUtils.*;
+
+/** Differential tests that run randomly generated machines and messages
+ *  through a simple reference model of the Enigma and through each of the
+ *  package's conversion paths, and check that they agree.
+ *  @author Kevin Chen
+ */
+public class MachineFuzzTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Number of threads running cases at once. */
+    private static final int THREADS = 4;
+
+    /** Number of cases run by each thread. */
+    private static final int CASES = 60;
+
+    /** A random machine description and message. */
+    static class Case {
+
+        /** A case generated from RANDOM. */
+        Case(Random random) {
+            int size = randomSize(random);
+            alphabet = randomAlphabet(random, size);
+            int[] chars = alphabet.codePoints().toArray();
+            numRotors = 2 + random.nextInt(5);
+            pawls = random.nextInt(numRotors);
+            names = new String[numRotors];
+            cycles = new String[numRotors];
+            notches = new String[numRotors];
+            names[0] = "R";
+            cycles[0] = randomInvolution(random, chars);
+            int moving = 0;
+            for (int i = numRotors - 1; i > 0; i -= 1) {
+                names[i] = "ROTOR" + i;
+                cycles[i] = randomCycles(random, chars);
+                if (moving < pawls && random.nextInt(10) > 0) {
+                    moving += 1;
+                    StringBuilder notch = new StringBuilder();
+                    for (int k = random.nextInt(3); k > 0; k -= 1) {
+                        int c = chars[random.nextInt(chars.length)];
+                        if (notch.indexOf(Character.toString(c)) < 0) {
+                            notch.appendCodePoint(c);
+                        }
+                    }
+                    notches[i] = notch.toString();
+                }
+            }
+            StringBuilder start = new StringBuilder();
+            for (int i = 1; i < numRotors; i += 1) {
+                start.appendCodePoint(chars[random.nextInt(chars.length)]);
+            }
+            setting = start.toString();
+            plugboard = random.nextBoolean() ? null
+                : randomPairs(random, chars, random.nextInt(size / 2 + 1));
+            StringBuilder msg = new StringBuilder();
+            for (int k = random.nextInt(300); k > 0; k -= 1) {
+                msg.appendCodePoint(chars[random.nextInt(chars.length)]);
+            }
+            message = msg.toString();
+        }
+
+        /** Return a new Machine for this case, set up and ready to
+         *  convert. */
+        MachineEngine machine() {
+            return machine("reference");
+        }
+
+        /** Return a new engine of the kind named ENGINE for this case, set
+         *  up and ready to convert. */
+        MachineEngine machine(String engine) {
+            Alphabet alpha = new Alphabet(alphabet);
+            List<Rotor> rotors = new ArrayList<>();
+            rotors.add(new Reflector(names[0],
+                                     new Permutation(cycles[0], alpha)));
+            for (int i = 1; i < numRotors; i += 1) {
+                Permutation perm = new Permutation(cycles[i], alpha);
+                rotors.add(notches[i] == null
+                           ? new FixedRotor(names[i], perm)
+                           : new MovingRotor(names[i], perm, notches[i]));
+            }
+            Collections.shuffle(rotors, new Random(setting.hashCode()));
+            MachineEngine result = MachineEngines.create(
+                engine, new Machine(alpha, numRotors, pawls, rotors));
+            Main.setUp(result, settingsLine());
+            return result;
+        }
+
+        /** Return the settings line that sets up this case. */
+        String settingsLine() {
+            return "* " + String.join(" ", names) + " " + setting
+                + (plugboard == null ? "" : " " + plugboard);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("alphabet %s, %d rotors, %d pawls, %s",
+                                 alphabet, numRotors, pawls, settingsLine());
+        }
+
+        /** The alphabet's characters. */
+        final String alphabet;
+        /** Rotor slot count and pawl count. */
+        final int numRotors, pawls;
+        /** Rotor names, cycles and notches (null for fixed rotors), by
+         *  slot. */
+        final String[] names, cycles, notches;
+        /** Initial setting. */
+        final String setting;
+        /** Plugboard cycles, or null. */
+        final String plugboard;
+        /** The message to convert. */
+        final String message;
+    }
+
+    /** A direct model of the machine described by a Case, using plain
+     *  arrays and arithmetic and sharing no code with the package. */
+    static class Reference {
+
+        /** A model of case C. */
+        Reference(Case c) {
+            _chars = c.alphabet.codePoints().toArray();
+            _n = _chars.length;
+            _slots = c.numRotors;
+            _pawls = c.pawls;
+            _perm = new int[_slots][];
+            _notches = new boolean[_slots][_n];
+            _moving = new boolean[_slots];
+            _posn = new int[_slots];
+            for (int i = 0; i < _slots; i += 1) {
+                _perm[i] = parse(c.cycles[i]);
+                _moving[i] = c.notches[i] != null;
+                if (_moving[i]) {
+                    for (int cp : c.notches[i].codePoints().toArray()) {
+                        _notches[i][index(cp)] = true;
+                    }
+                }
+            }
+            int[] start = c.setting.codePoints().toArray();
+            for (int i = 1; i < _slots; i += 1) {
+                _posn[i] = index(start[i - 1]);
+            }
+            _plug = c.plugboard == null ? parse("") : parse(c.plugboard);
+        }
+
+        /** Return the conversion of MSG. */
+        String convert(String msg) {
+            StringBuilder result = new StringBuilder();
+            for (int cp : msg.codePoints().toArray()) {
+                boolean[] step = new boolean[_slots];
+                step[_slots - 1] = true;
+                for (int i = _slots - _pawls + 1; i < _slots; i += 1) {
+                    if (_moving[i] && _notches[i][_posn[i]]) {
+                        step[i - 1] = step[i] = true;
+                    }
+                }
+                for (int i = 0; i < _slots; i += 1) {
+                    if (step[i] && _moving[i]) {
+                        _posn[i] = (_posn[i] + 1) % _n;
+                    }
+                }
+                int x = _plug[index(cp)];
+                for (int i = _slots - 1; i >= 0; i -= 1) {
+                    x = Math.floorMod(_perm[i][(x + _posn[i]) % _n]
+                                      - _posn[i], _n);
+                }
+                for (int i = 1; i < _slots; i += 1) {
+                    int y = (x + _posn[i]) % _n, k = 0;
+                    while (_perm[i][k] != y) {
+                        k += 1;
+                    }
+                    x = Math.floorMod(k - _posn[i], _n);
+                }
+                result.appendCodePoint(_chars[_plug[x]]);
+            }
+            return result.toString();
+        }
+
+        /** Return the index of CP. */
+        private int index(int cp) {
+            for (int i = 0; i < _n; i += 1) {
+                if (_chars[i] == cp) {
+                    return i;
+                }
+            }
+            throw new AssertionError("not in alphabet");
+        }
+
+        /** Return the mapping given by CYCLES. */
+        private int[] parse(String cycles) {
+            int[] result = new int[_n];
+            for (int i = 0; i < _n; i += 1) {
+                result[i] = i;
+            }
+            for (String cycle : cycles.replaceAll("[\\s(]", "").split("\\)")) {
+                int[] cps = cycle.codePoints().toArray();
+                for (int k = 0; k < cps.length; k += 1) {
+                    result[index(cps[k])] = index(cps[(k + 1) % cps.length]);
+                }
+            }
+            return result;
+        }
+
+        /** Alphabet, as code points. */
+        private final int[] _chars;
+        /** Alphabet size, slot count and pawl count. */
+        private final int _n, _slots, _pawls;
+        /** Forward mapping of each rotor at setting 0. */
+        private final int[][] _perm;
+        /** Notch positions of each rotor. */
+        private final boolean[][] _notches;
+        /** Which rotors move. */
+        private final boolean[] _moving;
+        /** Rotor positions. */
+        private final int[] _posn;
+        /** Plugboard mapping. */
+        private final int[] _plug;
+    }
+
+    /** Return a random alphabet size from RANDOM, mostly small but
+     *  sometimes large enough to disable rotor tables. */
+    static int randomSize(Random random) {
+        switch (random.nextInt(10)) {
+        case 0:
+            return 2 + random.nextInt(3);
+        case 1:
+            return 200 + random.nextInt(600);
+        default:
+            return 5 + random.nextInt(60);
+        }
+    }
+
+    /** Return an alphabet of SIZE distinct characters chosen using RANDOM,
+     *  all unchanged by conversion to upper case. */
+    static String randomAlphabet(Random random, int size) {
+        int base;
+        switch (size > 90 ? 3 : random.nextInt(4)) {
+        case 0:
+            base = '!';
+            break;
+        case 1:
+            base = 0x391;
+            break;
+        case 2:
+            base = 0x1d400;
+            break;
+        default:
+            base = 0x4e00;
+            break;
+        }
+        List<Integer> pool = new ArrayList<>();
+        for (int cp = base; pool.size() < size + 100; cp += 1) {
+            String s = Character.toString(cp);
+            if (Character.isDefined(cp) && cp > ' '
+                && !Character.isWhitespace(cp) && "()*".indexOf(cp) < 0
+                && s.toUpperCase().equals(s)
+                && (cp < 0x80 || Character.isLetterOrDigit(cp))) {
+                pool.add(cp);
+            }
+        }
+        Collections.shuffle(pool, random);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < size; i += 1) {
+            result.appendCodePoint(pool.get(i));
+        }
+        return result.toString();
+    }
+
+    /** Return random cycles over all of CHARS, using RANDOM. */
+    static String randomCycles(Random random, int[] chars) {
+        List<Integer> order = new ArrayList<>();
+        for (int c : chars) {
+            order.add(c);
+        }
+        Collections.shuffle(order, random);
+        StringBuilder result = new StringBuilder("(");
+        for (int i = 0; i < order.size(); i += 1) {
+            if (i > 0 && random.nextInt(6) == 0) {
+                result.append(random.nextBoolean() ? ")(" : ") (");
+            }
+            result.appendCodePoint(order.get(i));
+        }
+        return result.append(")").toString();
+    }
+
+    /** Return a random product of disjoint transpositions of CHARS, using
+     *  RANDOM, that covers as many characters as possible. */
+    static String randomInvolution(Random random, int[] chars) {
+        return randomPairs(random, chars, chars.length / 2);
+    }
+
+    /** Return COUNT random disjoint transpositions of CHARS, using RANDOM,
+     *  in the form "(ab) (cd) ...". */
+    static String randomPairs(Random random, int[] chars, int count) {
+        List<Integer> order = new ArrayList<>();
+        for (int c : chars) {
+            order.add(c);
+        }
+        Collections.shuffle(order, random);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i += 1) {
+            result.append(i == 0 ? "(" : " (")
+                .appendCodePoint(order.get(2 * i))
+                .appendCodePoint(order.get(2 * i + 1)).append(")");
+        }
+        return result.toString();
+    }
+
+    /** Check every conversion path against the reference for case C,
+     *  using RANDOM for any further choices. */
+    static void checkCase(Case c, Random random) {
+        String expected = new Reference(c).convert(c.message);
+
+        Alphabet alpha = new Alphabet(c.alphabet);
+        int[] cps = c.message.codePoints().toArray();
+        for (String engine : MachineEngines.NAMES) {
+            assertEquals(msg("String, " + engine, "%s", c), expected,
+                         c.machine(engine).convert(c.message));
+
+            int[] indices = new int[cps.length];
+            for (int i = 0; i < cps.length; i += 1) {
+                indices[i] = alpha.lookup(cps[i]);
+            }
+            c.machine(engine).convertIndices(indices, 0, indices.length);
+            for (int i = 0; i < indices.length; i += 1) {
+                indices[i] = alpha.toCodePoint(indices[i]);
+            }
+            assertEquals(msg("indices, " + engine, "%s", c), expected,
+                         new String(indices, 0, indices.length));
+        }
+
+        int[] pass = (" " + c.message + "\u00e9").codePoints().toArray();
+        c.machine().convertPassThrough(pass, 0, pass.length);
+        assertEquals(msg("pass-through", "%s", c), " " + expected + "\u00e9",
+                     new String(pass, 0, pass.length));
+
+        AsciiPath ascii = AsciiPath.forAlphabet(alpha);
+        if (ascii != null) {
+            byte[] line = c.message.getBytes();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            OutputBuffer out = new OutputBuffer(bytes, 0);
+            assertTrue(ascii.convertLine(line, line.length, c.machine(),
+                                         Formatter.forName("none"), out));
+            out.flush();
+            assertEquals(msg("ASCII", "%s", c), expected + "\n",
+                         bytes.toString());
+        }
+
+        MachineProcessor processor = new MachineProcessor(c.machine());
+        StringBuilder streamed = new StringBuilder();
+        processor.subscribe(new Flow.Subscriber<String>() {
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+            public void onNext(String item) {
+                streamed.append(item);
+            }
+            public void onError(Throwable excp) {
+                throw new AssertionError(excp);
+            }
+            public void onComplete() {
+            }
+        });
+        processor.onSubscribe(new Flow.Subscription() {
+            public void request(long n) {
+            }
+            public void cancel() {
+            }
+        });
+        for (int i = 0; i < c.message.length(); ) {
+            int end = Math.min(c.message.length(), i + random.nextInt(40));
+            if (end < c.message.length()
+                && Character.isLowSurrogate(c.message.charAt(end))) {
+                end += 1;
+            }
+            processor.onNext(c.message.substring(i, end));
+            i = end;
+        }
+        assertEquals(msg("stream", "%s", c), expected, streamed.toString());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testReferenceAgreesWithKnownAnswer() {
+        Machine m = navalMachine();
+        Main.setUp(m, "* B BETA I II III AAAA");
+        assertEquals("ILBDAAMTAZ", m.convert("HELLOWORLD"));
+    }
+
+    @Test
+    public void testLargeAlphabetFallsBackToReference() {
+        String chars = randomAlphabet(new Random(3), 600);
+        Alphabet alpha = new Alphabet(chars);
+        StringBuilder pairs = new StringBuilder();
+        for (int i = 0; i < alpha.size(); i += 2) {
+            pairs.append('(').appendCodePoint(alpha.toCodePoint(i))
+                .appendCodePoint(alpha.toCodePoint(i + 1)).append(')');
+        }
+        Permutation perm = new Permutation(pairs.toString(), alpha);
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", perm));
+        rotors.add(new MovingRotor("M", perm, ""));
+        for (String engine : MachineEngines.NAMES) {
+            Machine config = new Machine(alpha, 2, 1, rotors);
+            assertSame(engine, config, MachineEngines.create(engine, config));
+        }
+    }
+
+    @Test
+    public void testShortInputUsesReference() {
+        Alphabet alpha = new Alphabet(UPPER_STRING);
+        Permutation perm = new Permutation(
+            "(AB)(CD)(EF)(GH)(IJ)(KL)(MN)(OP)(QR)(ST)(UV)(WX)(YZ)", alpha);
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", perm));
+        rotors.add(new MovingRotor("M", perm, "A"));
+        Machine config = new Machine(alpha, 2, 1, rotors);
+        assertSame(config, MachineEngines.create(config, 100));
+        config = new Machine(alpha, 2, 1, rotors);
+        assertNotSame(config, MachineEngines.create(config, 1 << 20));
+        config = new Machine(alpha, 2, 1, rotors);
+        assertNotSame(config, MachineEngines.create(config, -1));
+    }
+
+    @Test
+    public void testRandomMachines() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t += 1) {
+                long seed = 0x5eed + t;
+                results.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int k = 0; k < CASES; k += 1) {
+                        checkCase(new Case(random), random);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
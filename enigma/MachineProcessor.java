@@ -0,0 +1,228 @@
+package enigma;
+
+import java.util.concurrent.Flow;
+
+/** A reactive stage that runs chunks of text through a Machine.  Each
+ *  chunk whose first character is '*' is a settings frame, and is applied
+ *  to the machine exactly as Main applies a settings line; it produces no
+ *  output.  Every other chunk has its whitespace removed, is converted to
+ *  upper case, and is converted by the machine, producing one output item.
+ *  The rotors are not reset between chunks, so a message may be split
+ *  across any number of chunks.  Demand from the subscriber is passed
+ *  upstream one for one, which gives backpressure.  Chunks of bytes may
+ *  be supplied as CharBuffer views of the decoded bytes.  If the publisher
+ *  completes or fails before anyone subscribes to me, the signal is held
+ *  for my subscriber.
+ *  @author Kevin Chen
+ */
+class MachineProcessor implements Flow.Processor<CharSequence, String> {
+
+    /** A processor that converts chunks using MACHINE, which must already
+     *  have its rotors inserted unless the first chunk is a settings
+     *  frame. */
+    MachineProcessor(MachineEngine machine) {
+        _machine = machine;
+        _buffer = new int[INITIAL_BUFFER];
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("null subscriber");
+        }
+        boolean held;
+        synchronized (this) {
+            if (_downstream != null) {
+                held = false;
+            } else {
+                _downstream = subscriber;
+                subscriber.onSubscribe(new Demand());
+                if (!_held) {
+                    return;
+                }
+                held = true;
+            }
+        }
+        if (held) {
+            signal(subscriber, _heldError);
+            return;
+        }
+        subscriber.onSubscribe(NO_DEMAND);
+        subscriber.onError(new IllegalStateException(
+                "MachineProcessor supports only one subscriber"));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        long pending;
+        synchronized (this) {
+            if (_upstream != null || _done) {
+                subscription.cancel();
+                return;
+            }
+            _upstream = subscription;
+            pending = _pending;
+            _pending = 0;
+        }
+        if (pending > 0) {
+            subscription.request(pending);
+        }
+    }
+
+    @Override
+    public void onNext(CharSequence chunk) {
+        if (_done) {
+            return;
+        }
+        try {
+            if (chunk.length() > 0 && chunk.charAt(0) == '*') {
+                Main.setUp(_machine, chunk.toString().trim());
+                _upstream.request(1);
+                return;
+            }
+            int len = 0;
+            for (int i = 0; i < chunk.length(); ) {
+                int c = Character.codePointAt(chunk, i);
+                if (!Character.isWhitespace(c)) {
+                    if (len == _buffer.length) {
+                        int[] bigger = new int[2 * len];
+                        System.arraycopy(_buffer, 0, bigger, 0, len);
+                        _buffer = bigger;
+                    }
+                    _buffer[len] = Character.toUpperCase(c);
+                    len += 1;
+                }
+                i += Character.charCount(c);
+            }
+            _machine.convert(_buffer, 0, len);
+            _downstream.onNext(new String(_buffer, 0, len));
+        } catch (EnigmaException excp) {
+            _upstream.cancel();
+            onError(excp);
+        }
+    }
+
+    @Override
+    public void onError(Throwable excp) {
+        terminate(excp);
+    }
+
+    @Override
+    public void onComplete() {
+        terminate(null);
+    }
+
+    /** End my output, with error EXCP if it is not null, unless it has
+     *  already ended.  If I have no subscriber yet, the signal is held
+     *  until one subscribes. */
+    private void terminate(Throwable excp) {
+        Flow.Subscriber<? super String> downstream;
+        synchronized (this) {
+            if (_done) {
+                return;
+            }
+            _done = true;
+            downstream = _downstream;
+            if (downstream == null) {
+                _held = true;
+                _heldError = excp;
+                return;
+            }
+        }
+        signal(downstream, excp);
+    }
+
+    /** Signal the end of output to SUBSCRIBER, with error EXCP if it is
+     *  not null. */
+    private static void signal(Flow.Subscriber<? super String> subscriber,
+                               Throwable excp) {
+        if (excp != null) {
+            subscriber.onError(excp);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    /** The subscription handed to my subscriber. */
+    private class Demand implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription upstream;
+            synchronized (MachineProcessor.this) {
+                if (n <= 0) {
+                    upstream = null;
+                } else if (_upstream == null) {
+                    _pending = _pending + n < 0 ? Long.MAX_VALUE
+                        : _pending + n;
+                    return;
+                } else {
+                    upstream = _upstream;
+                }
+            }
+            if (upstream == null) {
+                if (_upstream != null) {
+                    _upstream.cancel();
+                }
+                onError(new IllegalArgumentException(
+                        "non-positive subscription request"));
+            } else {
+                upstream.request(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription upstream;
+            synchronized (MachineProcessor.this) {
+                _done = true;
+                upstream = _upstream;
+            }
+            if (upstream != null) {
+                upstream.cancel();
+            }
+        }
+    }
+
+    /** The subscription handed to rejected subscribers, which does
+     *  nothing. */
+    private static final Flow.Subscription NO_DEMAND =
+        new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+
+    /** Initial capacity of the conversion buffer. */
+    private static final int INITIAL_BUFFER = 256;
+
+    /** The machine that converts my chunks. */
+    private final MachineEngine _machine;
+
+    /** Reusable buffer holding the code points being converted. */
+    private int[] _buffer;
+
+    /** My one subscriber. */
+    private Flow.Subscriber<? super String> _downstream;
+
+    /** Subscription to the publisher of my chunks. */
+    private volatile Flow.Subscription _upstream;
+
+    /** Demand received before I was subscribed to a publisher. */
+    private long _pending;
+
+    /** True once I have completed, failed, or been cancelled. */
+    private volatile boolean _done;
+
+    /** True iff my output ended before I had a subscriber, which must
+     *  then be told. */
+    private boolean _held;
+
+    /** The error with which my output ended before I had a subscriber,
+     *  or null if it completed normally. */
+    private Throwable _heldError;
+}
@@ -0,0 +1,162 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineProcessor class.
+ *  @author Kevin Chen
+ */
+public class MachineProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A subscriber that records everything it receives, requesting one
+     *  item at a time. */
+    private static class Collector implements Flow.Subscriber<String> {
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(String item) {
+            items.add(item);
+            _subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            error = excp;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        /** Items received so far. */
+        final List<String> items = new ArrayList<>();
+        /** Error received, if any. */
+        Throwable error;
+        /** Released when the stream ends. */
+        final CountDownLatch done = new CountDownLatch(1);
+        /** My subscription. */
+        private Flow.Subscription _subscription;
+    }
+
+    /** Publish CHUNKS through a new MachineProcessor around a naval
+     *  machine, and return the collector that received the output. */
+    private Collector run(String... chunks) throws InterruptedException {
+        MachineProcessor processor = new MachineProcessor(navalMachine());
+        Collector collector = new Collector();
+        processor.subscribe(collector);
+        try (SubmissionPublisher<CharSequence> publisher =
+                 new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (String chunk : chunks) {
+                publisher.submit(chunk);
+            }
+        }
+        assertTrue("stream did not finish",
+                   collector.done.await(4, TimeUnit.SECONDS));
+        return collector;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSingleChunk() throws InterruptedException {
+        Collector c = run("* B BETA I II III AAAA", "Hello world");
+        assertNull(c.error);
+        assertEquals(List.of("ILBDAAMTAZ"), c.items);
+    }
+
+    @Test
+    public void testStateAcrossChunks() throws InterruptedException {
+        Collector c = run("* B BETA I II III AAAA", "Hel", "lo wo", "", "rld");
+        assertNull(c.error);
+        assertEquals(List.of("ILB", "DAAM", "", "TAZ"), c.items);
+    }
+
+    @Test
+    public void testSettingsFrame() throws InterruptedException {
+        Collector c = run("* B BETA I II III AAAA", "HELLO",
+                          "* B BETA I II III AAAA", "HELLO");
+        assertNull(c.error);
+        assertEquals(List.of("ILBDA", "ILBDA"), c.items);
+    }
+
+    @Test
+    public void testBadSettings() throws InterruptedException {
+        Collector c = run("* B BETA I II III", "HELLO");
+        assertTrue(c.error instanceof EnigmaException);
+    }
+
+    /** A subscription that records what is asked of it. */
+    private static class Upstream implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /** Total items requested. */
+        long requested;
+        /** True once cancelled. */
+        boolean cancelled;
+    }
+
+    @Test
+    public void testSecondSubscriberRejected() {
+        MachineProcessor processor = new MachineProcessor(navalMachine());
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        Collector first = new Collector(), second = new Collector();
+        processor.subscribe(first);
+        assertEquals(1, upstream.requested);
+        processor.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+        second._subscription.request(5);
+        second._subscription.cancel();
+        assertEquals(1, upstream.requested);
+        assertFalse(upstream.cancelled);
+        assertNull(first.error);
+    }
+
+    @Test
+    public void testEndBeforeSubscribe() {
+        MachineProcessor completed = new MachineProcessor(navalMachine());
+        completed.onComplete();
+        Collector c = new Collector();
+        completed.subscribe(c);
+        assertEquals(0, c.done.getCount());
+        assertNull(c.error);
+
+        MachineProcessor failed = new MachineProcessor(navalMachine());
+        failed.onError(new IllegalStateException("upstream failed"));
+        c = new Collector();
+        failed.subscribe(c);
+        assertTrue(c.error instanceof IllegalStateException);
+    }
+}
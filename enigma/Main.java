@@ -1,12 +1,14 @@
 package enigma;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
-
-import java.util.ArrayList;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import static enigma.EnigmaException.*;
 
@@ -17,13 +19,15 @@ public final class Main {
 
     /** Process a sequence of encryptions and decryptions, as
      *  specified by ARGS, where 1 <= ARGS.length <= 3.
-     *  ARGS[0] is the name of a configuration file.
+     *  ARGS[0] is the name of a configuration file, or a comma-separated
+     *  list of them to run the messages through a Cascade of machines.
      *  ARGS[1] is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
-     *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  standard output.  Files whose names end in ".gz" or ".deflate"
+     *  are compressed (see Compression).  Exits normally if there are no
+     *  errors in the input; otherwise with code 1. */
     public static void main(String... args) {
         try {
             new Main(args).process();
@@ -34,148 +38,455 @@ public final class Main {
         System.exit(1);
     }
 
-    /** Check ARGS and open the necessary files (see comment on main). */
+    /** Check ARGS and open the necessary files (see comment on main).
+     *  If the system property enigma.checkpoint names a file, progress
+     *  is recorded there every enigma.checkpoint.interval bytes of input,
+     *  and if enigma.resume is also true, processing resumes from the
+     *  progress recorded there, if any.  If enigma.pipeline is true, input
+     *  is read ahead and output written behind on threads of their own,
+     *  so that file I/O overlaps with conversion. */
     Main(String[] args) {
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        String[] configs = args[0].split(",");
+        _configs = new LineReader[configs.length];
+        for (int i = 0; i < configs.length; i++) {
+            _configs[i] = LineReader.open(configs[i], 0);
+        }
+
+        _pipeline = Boolean.getBoolean(PIPELINE_PROPERTY);
+        String checkpoint = System.getProperty(CHECKPOINT_PROPERTY);
+        if (checkpoint != null) {
+            if (args.length < 3) {
+                throw error("checkpointing needs input and output files");
+            } else if (Compression.isCompressed(args[1])
+                       || Compression.isCompressed(args[2])) {
+                throw error("checkpointing needs uncompressed files");
+            }
+            _checkpointFile = new File(checkpoint);
+            _checkpointInterval = Long.getLong(CHECKPOINT_INTERVAL_PROPERTY,
+                                               DEFAULT_CHECKPOINT_INTERVAL);
+            if (Boolean.getBoolean(RESUME_PROPERTY)) {
+                _resume = Checkpoint.read(_checkpointFile);
+            }
+        }
 
-        if (args.length > 1) {
-            _input = getInput(args[1]);
+        String messages = System.getProperty(MESSAGES_PROPERTY);
+        if (messages != null) {
+            if (args.length < 2 || _checkpointFile != null
+                || Compression.isCompressed(args[1])) {
+                throw error("selecting messages needs an uncompressed input "
+                            + "file and no checkpoint");
+            }
+            selectMessages(messages, args[1]);
+            _input = openInput(args[1], _inputStart);
+            _inputLength = _inputEnd - _inputStart;
+        } else if (args.length > 1 && Compression.isCompressed(args[1])) {
+            _input = new LineReader(Compression.openInput(args[1]), 0);
+        } else if (args.length > 1) {
+            long start = _resume == null ? 0 : _resume.inputOffset();
+            _input = openInput(args[1], start);
+            _inputLength = new File(args[1]).length() - start;
+        } else if (_pipeline) {
+            _input = new LineReader(new PrefetchChannel(System.in), 0);
         } else {
-            _input = new Scanner(System.in);
+            _input = new LineReader(System.in);
         }
 
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            _output = getOutput(args[2],
+                                _resume == null ? -1
+                                : _resume.outputOffset());
         } else {
             _output = System.out;
         }
+        if (_pipeline && _checkpointFile == null && _outputFile != null) {
+            _output = new WriteBehindStream(_output);
+        }
+        _out = new OutputBuffer(_output,
+                                _resume == null ? 0 : _resume.outputOffset());
+        _formatter = Formatter.forName(System.getProperty(FORMAT_PROPERTY));
+        _passThrough = Boolean.getBoolean(PASS_THROUGH_PROPERTY);
+        if (_configs.length > 1 && (_checkpointFile != null || _passThrough)) {
+            throw error("a cascade of machines cannot be used with "
+                        + "checkpoints or pass-through");
+        }
+    }
 
-
+    /** Set _inputStart, _inputEnd, _firstSettings and _firstEffective
+     *  to select the messages numbered in RANGE, which is either K or
+     *  K-L, numbering from 1, using the index of INPUT named by
+     *  enigma.index or, by default, INPUT with ".idx" appended. */
+    private void selectMessages(String range, String input) {
+        String name = System.getProperty(INDEX_PROPERTY,
+                                         MessageIndex.defaultName(input));
+        MessageIndex index = new MessageIndex(name);
+        if (index.inputLength() != new File(input).length()) {
+            throw error("message index %s is out of date for %s",
+                        name, input);
+        }
+        int first, last;
+        try {
+            int dash = range.indexOf('-');
+            first = Integer.parseInt(range.substring(0, dash < 0
+                                                     ? range.length()
+                                                     : dash).trim());
+            last = dash < 0 ? first
+                : Integer.parseInt(range.substring(dash + 1).trim());
+        } catch (NumberFormatException excp) {
+            throw error("bad message range: %s", range);
+        }
+        if (first > last) {
+            throw error("bad message range: %s", range);
+        }
+        _inputStart = index.start(first - 1);
+        _inputEnd = index.end(last - 1);
+        _firstSettings = index.settings(first - 1);
+        _firstEffective = index.effectiveSettings(first - 1);
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Return a reader of lines from the file named NAME, positioned at
+     *  byte OFFSET of the file, which reads ahead on a thread of its own
+     *  if _pipeline. */
+    private LineReader openInput(String name, long offset) {
+        if (!_pipeline) {
+            return LineReader.open(name, offset);
+        }
         try {
-            return new Scanner(new File(name));
+            FileChannel in = FileChannel.open(Paths.get(name));
+            in.position(offset);
+            return new LineReader(
+                new PrefetchChannel(Channels.newInputStream(in)), offset);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a stream writing to the file named NAME, compressing if
+     *  its name says so.  If KEEP is non-negative, the first KEEP bytes of
+     *  the file are kept and output is appended to them; otherwise the
+     *  file is overwritten. */
+    private OutputStream getOutput(String name, long keep) {
+        if (Compression.isCompressed(name)) {
+            return Compression.openOutput(name);
+        }
         try {
-            return new PrintStream(new File(name));
+            if (keep >= 0) {
+                try (RandomAccessFile file = new RandomAccessFile(name, "rw")) {
+                    if (file.length() < keep) {
+                        throw error("%s is shorter than its checkpoint", name);
+                    }
+                    file.setLength(keep);
+                }
+            }
+            _outputFile = new FileOutputStream(name, keep >= 0);
+            return _outputFile;
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Configure an Enigma machine from the contents of configuration
-     *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
-    private void process() {
-        _machine = readConfig();
+    /** Configure Enigma machines from the contents of the configuration
+     *  files _configs and apply them to the messages in _input, sending the
+     *  results to _output.  The output, and any statistics, of messages
+     *  converted before an error are written all the same. */
+    void process() {
+        boolean done = false;
+        try {
+            MachineEngine[] machines = new MachineEngine[_configs.length];
+            for (int i = 0; i < machines.length; i++) {
+                machines[i] = readConfig(_configs[i], _inputLength);
+                _configs[i].close();
+            }
+            String stats = System.getProperty(STATS_PROPERTY);
+            if (stats != null) {
+                _analyzer = new TrafficAnalyzer(
+                    machines[machines.length - 1], stats);
+                machines[machines.length - 1] = _analyzer;
+            }
+            _machine = machines[0];
+            _alphabet = _machine.alphabet();
+            if (machines.length > 1) {
+                processCascade(machines);
+            } else {
+                processMessages();
+            }
+            _input.close();
+            done = true;
+        } finally {
+            EnigmaException failure = null;
+            try {
+                closeOutput();
+            } catch (EnigmaException excp) {
+                failure = excp;
+            }
+            try {
+                if (_analyzer != null) {
+                    _analyzer.close();
+                }
+            } catch (EnigmaException excp) {
+                failure = failure == null ? excp : failure;
+            }
+            if (done && failure != null) {
+                throw failure;
+            }
+        }
+        if (_checkpointFile != null) {
+            _checkpointFile.delete();
+        }
+    }
+
+    /** Write everything in _out to _output, and close _output unless it
+     *  is the standard output. */
+    private void closeOutput() {
+        _out.flush();
+        if (_output != System.out) {
+            try {
+                _output.close();
+            } catch (IOException excp) {
+                throw error("could not close output: %s", excp.getMessage());
+            }
+        }
+    }
+
+    /** Apply _machine to the messages in _input, sending the results to
+     *  _output. */
+    private void processMessages() {
+        if (_resume != null) {
+            applySettings(_resume.settings());
+            if (_resume.plugboard() != null) {
+                _plugboard = _resume.plugboard();
+                _machine.setPlugboard(new Permutation(_plugboard, _alphabet));
+            }
+            _machine.setPositions(_resume.positions());
+        } else {
+            applySettings(firstSettings());
+        }
+        AsciiPath ascii = AsciiPath.forAlphabet(_alphabet);
+        boolean asciiFormat = _formatter instanceof Formatter.Grouping;
+        long lastCheckpoint = _input.offset();
+        for (int len = _input.readLine();
+             len >= 0 && _input.offset() <= _inputEnd;
+             len = _input.readLine()) {
+            byte[] bytes = _input.lineBytes();
+            if (len == 0) {
+                _out.newline();
+            } else if (bytes[0] == '*') {
+                applySettings(new String(bytes, 0, len));
+            } else if (_passThrough) {
+                if (ascii != null) {
+                    ascii.passLine(bytes, len, _machine, _out);
+                } else {
+                    passLine(new String(bytes, 0, len));
+                }
+            } else if (ascii == null || !asciiFormat
+                       || !ascii.convertLine(bytes, len, _machine,
+                                             _formatter, _out)) {
+                convertLine(new String(bytes, 0, len));
+            }
+            if (_checkpointFile != null
+                && _input.offset() - lastCheckpoint >= _checkpointInterval) {
+                checkpoint();
+                lastCheckpoint = _input.offset();
+            }
+        }
+    }
+
+    /** Apply the Cascade of MACHINES, each converting the output of the
+     *  one before, to the messages in _input, sending the results of the
+     *  last to _output. */
+    private void processCascade(MachineEngine[] machines) {
+        Cascade cascade = new Cascade(machines, _formatter, _out);
+        cascade.start();
+        try {
+            cascade.settings(firstSettings());
+            for (String line = _input.nextLine();
+                 line != null && _input.offset() <= _inputEnd;
+                 line = _input.nextLine()) {
+                if (line.startsWith("*")) {
+                    cascade.settings(line);
+                } else {
+                    cascade.line(line);
+                }
+            }
+            cascade.finish();
+        } catch (RuntimeException excp) {
+            cascade.drain();
+            throw excp;
+        } finally {
+            cascade.cancel();
+        }
+    }
+
+    /** Read the first line of _input, which must be a settings line (and
+     *  the one expected, if messages are being selected), and return it,
+     *  or the settings in effect for it if messages are being selected. */
+    private String firstSettings() {
         String first = _input.nextLine();
-        if (first.charAt(0) != '*') {
+        if (first == null || first.length() == 0
+            || first.charAt(0) != '*') {
             throw error("Input file must start with settings.");
         }
-        setUp(_machine, first);
-        while (_input.hasNextLine()) {
-            String next = _input.nextLine();
-            if (next.length() == 0) {
-                _output.write("\n".getBytes(), 0, "\n".getBytes().length);
-            } else if (next.charAt(0) == '*') {
-                setUp(_machine, next);
-            } else {
-                next = next.replaceAll("\\s+", "").toUpperCase();
-                next = _machine.convert(next);
-                next = convertLine(next);
-                byte[] msgBytes = next.getBytes();
-                _output.write(msgBytes, 0, msgBytes.length);
-                _output.write("\n".getBytes(), 0, "\n".getBytes().length);
+        if (_firstSettings != null && !first.equals(_firstSettings)) {
+            throw error("message index does not match input");
+        }
+        return _firstEffective != null ? _firstEffective : first;
+    }
+
+    /** Convert the message in LINE, ignoring whitespace and case, and
+     *  write it to _out in the layout given by _formatter.  When that
+     *  layout is the original one, characters outside the alphabet are
+     *  kept rather than being an error. */
+    private void convertLine(String line) {
+        int len = 0;
+        if (_buffer.length < line.length()) {
+            _buffer = new int[line.length()];
+        }
+        for (int i = 0; i < line.length(); ) {
+            int c = line.codePointAt(i);
+            if (!Character.isWhitespace(c)) {
+                _buffer[len] = Character.toUpperCase(c);
+                len += 1;
             }
+            i += Character.charCount(c);
         }
+        if (_formatter instanceof Formatter.Preserving) {
+            _machine.convertPassThrough(_buffer, 0, len);
+        } else {
+            _machine.convert(_buffer, 0, len);
+        }
+        _formatter.format(_buffer, len, line, _out);
+    }
+
+    /** Convert the characters of LINE that are in the alphabet, and write
+     *  LINE to _out with those characters replaced. */
+    private void passLine(String line) {
+        int len = 0;
+        if (_buffer.length < line.length()) {
+            _buffer = new int[line.length()];
+        }
+        for (int i = 0; i < line.length(); ) {
+            _buffer[len] = line.codePointAt(i);
+            i += Character.charCount(_buffer[len]);
+            len += 1;
+        }
+        _machine.convertPassThrough(_buffer, 0, len);
+        for (int i = 0; i < len; i++) {
+            _out.putCodePoint(_buffer[i]);
+        }
+        _out.newline();
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** Make sure all output so far is on disk, and then record the
+     *  current position in the input and output and the state of
+     *  _machine in _checkpointFile. */
+    private void checkpoint() {
+        _out.flush();
         try {
-            _alphabet = new Alphabet(_config.nextLine());
-            if (_alphabet.contains(' ')) {
-                throw error("Invalid or non-existent alphabet in config file.");
-            }
-            String numParts = _config.nextLine();
-            char testParts = numParts.replaceAll("\\s+", "").charAt(0);
-            if (testParts < '0' || testParts > '9') {
-                throw error("Invalid setting for rotor quantity and pawls.");
-            }
-            numParts = numParts.trim();
-            int indexWhite = numParts.indexOf(" ");
-            int numRotors = Integer.parseInt(numParts.substring(0, indexWhite));
-            int pawls = Integer.parseInt(numParts.substring(indexWhite + 1));
-            ArrayList<Rotor> allRotor = new ArrayList<>();
-
-            while (_config.hasNextLine()) {
-                String next = _config.nextLine().trim();
-                int typeIndex = next.indexOf(" ") + 1;
-                if (next.charAt(typeIndex) == 'M') {
-                    allRotor.add(readRotor(next.trim()));
-                } else if (next.charAt(typeIndex) == 'N') {
-                    allRotor.add(readRotor(next.trim()));
-                } else {
-                    String second = _config.nextLine();
-                    second = second.substring(second.indexOf("("));
-                    next = next.trim();
-                    int whiteIndex = next.indexOf(" ");
-                    String name = next.substring(0, whiteIndex);
-                    next = next.substring(next.indexOf("("));
-                    String perm = next + " " + second;
-                    allRotor.add(new Reflector(name,
-                            new Permutation(perm, _alphabet)));
+            _outputFile.getFD().sync();
+        } catch (IOException excp) {
+            throw error("could not sync output: %s", excp.getMessage());
+        }
+        new Checkpoint(_input.offset(), _out.written(), _settings,
+                       _plugboard, _machine.positions())
+            .write(_checkpointFile);
+    }
+
+    /** Return an Enigma machine configured from the contents of the
+     *  configuration file CONFIG, using the engine chosen by
+     *  MachineEngines. */
+    static MachineEngine readConfig(LineReader config) {
+        return readConfig(config, -1);
+    }
+
+    /** Return an Enigma machine configured from the contents of the
+     *  configuration file CONFIG, using the engine chosen by
+     *  MachineEngines for about INPUTLENGTH bytes of input (an unknown
+     *  amount if negative). */
+    static MachineEngine readConfig(LineReader config, long inputLength) {
+        return MachineEngines.create(readMachine(config), inputLength);
+    }
+
+    /** Return the reference machine configured from the contents of the
+     *  configuration file CONFIG.  Only the alphabet, the numbers of rotors
+     *  and pawls, and the names of the rotors are read here; the rotors
+     *  themselves are built as they are used. */
+    static Machine readMachine(LineReader config) {
+        Alphabet alphabet = new Alphabet(configLine(config));
+        if (alphabet.contains(' ')) {
+            throw error("Invalid or non-existent alphabet in config file.");
+        }
+        String numParts = configLine(config);
+        char testParts = numParts.replaceAll("\\s+", "").charAt(0);
+        if (testParts < '0' || testParts > '9') {
+            throw error("Invalid setting for rotor quantity and pawls.");
+        }
+        numParts = numParts.trim();
+        int indexWhite = numParts.indexOf(" ");
+        int numRotors = Integer.parseInt(numParts.substring(0, indexWhite));
+        int pawls = Integer.parseInt(numParts.substring(indexWhite + 1));
+        RotorCatalog allRotor = new RotorCatalog(alphabet);
+        String description = null;
+        for (String next = config.nextLine(); next != null;
+             next = config.nextLine()) {
+            next = next.trim();
+            if (next.startsWith("(")) {
+                if (description == null) {
+                    throw error("bad rotor description");
                 }
+                description += " " + next;
+            } else if (!next.isEmpty()) {
+                if (description != null) {
+                    allRotor.add(description);
+                }
+                description = next;
             }
-            return new Machine(_alphabet, numRotors, pawls, allRotor);
-        } catch (NoSuchElementException excp) {
+        }
+        if (description != null) {
+            allRotor.add(description);
+        }
+        return new Machine(alphabet, numRotors, pawls, allRotor);
+    }
+
+    /** Return the next line of CONFIG, which must have one. */
+    private static String configLine(LineReader config) {
+        String line = config.nextLine();
+        if (line == null) {
             throw error("configuration file truncated");
         }
+        return line;
     }
 
-    /** Return a rotor, reading its description from _config.
-     *  Takes in a @param configLine that describes the
-     *  settings of a Rotor. */
-    private Rotor readRotor(String configLine) {
-        try {
-            int whiteIndex = configLine.indexOf(" ");
-            String name = configLine.substring(0, whiteIndex);
-            whiteIndex = whiteIndex + 1;
-            int nextWhite = configLine.indexOf(" ", whiteIndex);
-            if (configLine.charAt(whiteIndex) == 'M') {
-                String notches = configLine.substring
-                        (whiteIndex + 1, nextWhite);
-                Permutation x =
-                        new Permutation(configLine.substring
-                                (configLine.indexOf("(")), _alphabet);
-                return new MovingRotor(name, x, notches);
-            } else {
-                Permutation x =
-                        new Permutation(configLine.substring
-                                (configLine.indexOf("(")), _alphabet);
-                return new FixedRotor(name, x);
+    /** Set up _machine according to the settings line SETTINGS, which
+     *  becomes _settings, and keep track of the plugboard in force. */
+    private void applySettings(String settings) {
+        _settings = settings;
+        setUp(_machine, settings);
+        String cycles = plugboardCycles(settings);
+        if (cycles != null) {
+            _plugboard = cycles;
+        }
+    }
+
+    /** Return the plugboard cycles given on SETTINGS, a settings line for
+     *  one machine, or null if it gives none, in which case setUp leaves
+     *  the previous plugboard in force. */
+    static String plugboardCycles(String settings) {
+        String[] tokens = settings.trim().split("\\s+");
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i].startsWith("(")) {
+                return String.join(" ", Arrays.copyOfRange(tokens, i,
+                                                           tokens.length));
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
         }
+        return null;
     }
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+    static void setUp(MachineEngine M, String settings) {
         String[] rotors = new String[M.numRotors()];
         settings = settings.substring(2);
         String[] setting = settings.split(" ");
@@ -199,38 +510,121 @@ public final class Main {
                 perm += setting[i];
                 perm += " ";
             }
-            M.setPlugboard(new Permutation(perm, _alphabet));
+            M.setPlugboard(new Permutation(perm, M.alphabet()));
         }
         M.insertRotors(rotors);
         M.setRotors(rotorSetting);
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters).
-     *  @returns the converted msg in the proper format. */
-    private String convertLine(String msg) {
-        String result = "";
-        for (int i = 0; i < msg.length(); i += 5) {
-            result += msg.substring(i, Math.min(i + 5, msg.length()));
-            if (i + 5 < msg.length()) {
-                result += " ";
-            }
-        }
-        return result;
-    }
-
     /** The German enigma machine. */
-    private Machine _machine;
+    private MachineEngine _machine;
+
+    /** The analyzer of the output of the last machine, or null if no
+     *  statistics are wanted. */
+    private TrafficAnalyzer _analyzer;
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private LineReader _input;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Sources of machine configuration, one per machine. */
+    private LineReader[] _configs;
 
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private OutputStream _output;
+
+    /** Buffer in front of _output. */
+    private OutputBuffer _out;
+
+    /** Layout of converted messages. */
+    private Formatter _formatter;
+
+    /** True iff characters outside the alphabet are copied to the output
+     *  unchanged, rather than whitespace being removed. */
+    private boolean _passThrough;
+
+    /** Reusable buffer holding the code points being converted. */
+    private int[] _buffer = new int[0];
+
+    /** The stream underlying _output, when it is a file. */
+    private FileOutputStream _outputFile;
+
+    /** The settings line most recently applied to _machine. */
+    private String _settings;
+
+    /** The plugboard cycles in force in _machine, which may have been
+     *  given on an earlier settings line than _settings, or null if no
+     *  settings line has given any. */
+    private String _plugboard;
+
+    /** File in which to record checkpoints, or null if none. */
+    private File _checkpointFile;
+
+    /** Minimum number of input bytes between checkpoints. */
+    private long _checkpointInterval;
+
+    /** Number of bytes of input to process, or -1 if unknown. */
+    private long _inputLength = -1;
+
+    /** Offset in the input of the first line to process. */
+    private long _inputStart;
+
+    /** Processing stops with the line that ends at this offset. */
+    private long _inputEnd = Long.MAX_VALUE;
+
+    /** The expected first settings line of selected messages, or null if
+     *  messages are not being selected. */
+    private String _firstSettings;
+
+    /** The settings in effect for the first selected message, or null if
+     *  messages are not being selected. */
+    private String _firstEffective;
+
+    /** The checkpoint from which to resume, or null if starting afresh. */
+    private Checkpoint _resume;
+
+    /** True iff input is read ahead and output written behind. */
+    private boolean _pipeline;
+
+    /** System property naming the checkpoint file. */
+    static final String CHECKPOINT_PROPERTY = "enigma.checkpoint";
+
+    /** System property giving the number of input bytes between
+     *  checkpoints. */
+    static final String CHECKPOINT_INTERVAL_PROPERTY =
+        "enigma.checkpoint.interval";
+
+    /** System property that, when true, resumes from the checkpoint. */
+    static final String RESUME_PROPERTY = "enigma.resume";
+
+    /** System property describing the output format (see
+     *  Formatter.forName). */
+    static final String FORMAT_PROPERTY = "enigma.format";
+
+    /** System property that, when true, passes characters outside the
+     *  alphabet through unchanged and without advancing the rotors.  The
+     *  output format is then that of the input. */
+    static final String PASS_THROUGH_PROPERTY = "enigma.passthrough";
+
+    /** System property selecting the message or range of messages to
+     *  process (e.g. 3 or 3-7, numbering from 1), using a MessageIndex. */
+    static final String MESSAGES_PROPERTY = "enigma.messages";
+
+    /** System property naming the MessageIndex of the input. */
+    static final String INDEX_PROPERTY = "enigma.index";
+
+    /** System property naming a file to which statistics of the output
+     *  of each message are written (see TrafficAnalyzer). */
+    static final String STATS_PROPERTY = "enigma.stats";
+
+    /** System property that, when true, reads input and writes output
+     *  on threads of their own.  Only output to an uncompressed file is
+     *  written behind here (compressed output always is), and not when
+     *  checkpointing, since a checkpoint must find it on disk. */
+    static final String PIPELINE_PROPERTY = "enigma.pipeline";
+
+    /** Default number of input bytes between checkpoints. */
+    static final long DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
 }
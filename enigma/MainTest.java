@@ -0,0 +1,238 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for running Main on files.
+ *  @author Kevin Chen
+ */
+public class MainTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Messages in which the second settings line inherits the plugboard
+     *  of the first. */
+    private static final String[] TRAFFIC = {
+        "* B BETA III IV I AXLE (HQ) (EX)",
+        "HELLO WORLD",
+        "* B BETA III IV I AXLE",
+        "HELLO WORLD",
+        "FROM THE FIELD",
+    };
+
+    /** Return a new temporary file with suffix SUFFIX containing
+     *  LINES. */
+    private static File file(String suffix, String... lines)
+        throws IOException {
+        File result = File.createTempFile("main", suffix);
+        result.deleteOnExit();
+        Files.write(result.toPath(), (String.join("\n", lines) + "\n")
+                    .getBytes());
+        return result;
+    }
+
+    /** Return a configuration file for the naval machine. */
+    private static File navalConfig() throws IOException {
+        StringBuilder config = new StringBuilder(UPPER_STRING)
+            .append("\n5 3\n");
+        for (String name : NAVALA.keySet()) {
+            String type = name.equals("B") || name.equals("C") ? "R"
+                : NAVAL_NOTCHES.containsKey(name)
+                ? "M" + NAVAL_NOTCHES.get(name) : "N";
+            config.append(name).append(' ').append(type).append(' ')
+                .append(NAVALA.get(name)).append('\n');
+        }
+        return file(".conf", config.toString());
+    }
+
+    /** Run Main on ARGS. */
+    private static void run(String... args) {
+        new Main(args).process();
+    }
+
+    /** Return the contents of FILE. */
+    private static String contents(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testResumeKeepsInheritedPlugboard() throws IOException {
+        File config = navalConfig(), input = file(".inp", TRAFFIC),
+            expected = file(".out"), output = file(".out"),
+            checkpoint = file(".ckpt");
+        checkpoint.delete();
+        run(config.getPath(), input.getPath(), expected.getPath());
+
+        String[] bad = TRAFFIC.clone();
+        bad[bad.length - 1] = "FROM THE F1ELD";
+        Files.write(input.toPath(),
+                    (String.join("\n", bad) + "\n").getBytes());
+        System.setProperty(Main.CHECKPOINT_PROPERTY, checkpoint.getPath());
+        System.setProperty(Main.CHECKPOINT_INTERVAL_PROPERTY, "1");
+        try {
+            try {
+                run(config.getPath(), input.getPath(), output.getPath());
+                fail("bad input accepted");
+            } catch (EnigmaException excp) {
+                assertTrue(checkpoint.exists());
+            }
+            Files.write(input.toPath(),
+                        (String.join("\n", TRAFFIC) + "\n").getBytes());
+            System.setProperty(Main.RESUME_PROPERTY, "true");
+            run(config.getPath(), input.getPath(), output.getPath());
+        } finally {
+            System.clearProperty(Main.CHECKPOINT_PROPERTY);
+            System.clearProperty(Main.CHECKPOINT_INTERVAL_PROPERTY);
+            System.clearProperty(Main.RESUME_PROPERTY);
+        }
+        assertEquals(contents(expected), contents(output));
+    }
+
+    @Test
+    public void testSelectedMessageKeepsInheritedPlugboard()
+        throws IOException {
+        File config = navalConfig(), input = file(".inp", TRAFFIC),
+            full = file(".out"), output = file(".out");
+        File index = new File(MessageIndex.defaultName(input.getPath()));
+        index.deleteOnExit();
+        run(config.getPath(), input.getPath(), full.getPath());
+        assertEquals(2, MessageIndex.build(input.getPath(),
+                                           index.getPath()));
+
+        System.setProperty(Main.MESSAGES_PROPERTY, "2");
+        try {
+            run(config.getPath(), input.getPath(), output.getPath());
+        } finally {
+            System.clearProperty(Main.MESSAGES_PROPERTY);
+        }
+        String all = contents(full);
+        assertEquals(all.substring(all.indexOf('\n') + 1), contents(output));
+    }
+
+    @Test
+    public void testStaleIndexRejected() throws IOException {
+        File config = navalConfig(), input = file(".inp", TRAFFIC),
+            output = file(".out");
+        File index = new File(MessageIndex.defaultName(input.getPath()));
+        index.deleteOnExit();
+        MessageIndex.build(input.getPath(), index.getPath());
+        Files.write(input.toPath(),
+                    (TRAFFIC[0] + "\n" + String.join("\n", TRAFFIC) + "\n")
+                    .getBytes());
+
+        System.setProperty(Main.MESSAGES_PROPERTY, "2");
+        try {
+            run(config.getPath(), input.getPath(), output.getPath());
+            fail("stale index used");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("out of date"));
+        } finally {
+            System.clearProperty(Main.MESSAGES_PROPERTY);
+        }
+    }
+
+    /** Check that the output of the messages before a bad settings line
+     *  is written. */
+    private static void checkOutputBeforeError() throws IOException {
+        File config = navalConfig(),
+            input = file(".inp", TRAFFIC[0], TRAFFIC[1]),
+            expected = file(".out"), output = file(".out");
+        run(config.getPath(), input.getPath(), expected.getPath());
+
+        Files.write(input.toPath(),
+                    (String.join("\n", TRAFFIC[0], TRAFFIC[1],
+                                 "* B BETA III IV I") + "\n").getBytes());
+        try {
+            run(config.getPath(), input.getPath(), output.getPath());
+            fail("bad settings accepted");
+        } catch (EnigmaException excp) {
+            assertEquals(contents(expected), contents(output));
+        }
+    }
+
+    @Test
+    public void testOutputBeforeErrorIsWritten() throws IOException {
+        checkOutputBeforeError();
+    }
+
+    @Test
+    public void testPipelinedOutputBeforeErrorIsWritten()
+        throws IOException {
+        System.setProperty(Main.PIPELINE_PROPERTY, "true");
+        try {
+            checkOutputBeforeError();
+        } finally {
+            System.clearProperty(Main.PIPELINE_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testPreserveKeepsPunctuation() throws IOException {
+        File config = navalConfig(),
+            input = file(".inp", TRAFFIC[0], TRAFFIC[1]),
+            grouped = file(".out"), output = file(".out");
+        run(config.getPath(), input.getPath(), grouped.getPath());
+        String letters = contents(grouped).replaceAll("\\s+", "");
+
+        Files.write(input.toPath(),
+                    (TRAFFIC[0] + "\nHello, world!\n").getBytes());
+        System.setProperty(Main.FORMAT_PROPERTY, "preserve");
+        try {
+            run(config.getPath(), input.getPath(), output.getPath());
+        } finally {
+            System.clearProperty(Main.FORMAT_PROPERTY);
+        }
+        assertEquals(letters.substring(0, 5) + ", " + letters.substring(5)
+                     + "!\n", contents(output));
+    }
+
+    @Test
+    public void testPassThroughKeepsLayout() throws IOException {
+        File config = navalConfig(),
+            input = file(".inp", TRAFFIC[0], TRAFFIC[1]),
+            grouped = file(".out"), output = file(".out");
+        run(config.getPath(), input.getPath(), grouped.getPath());
+        String letters = contents(grouped).replaceAll("\\s+", "");
+
+        System.setProperty(Main.PASS_THROUGH_PROPERTY, "true");
+        try {
+            Files.write(input.toPath(),
+                        (TRAFFIC[0] + "\nHELLO, WORLD!\n").getBytes());
+            run(config.getPath(), input.getPath(), output.getPath());
+            assertEquals(letters.substring(0, 5) + ", "
+                         + letters.substring(5) + "!\n", contents(output));
+
+            Files.write(input.toPath(),
+                        (TRAFFIC[0] + "\nHello, world!\n").getBytes());
+            run(config.getPath(), input.getPath(), output.getPath());
+            assertEquals(letters.charAt(0) + "ello, world!\n",
+                         contents(output));
+        } finally {
+            System.clearProperty(Main.PASS_THROUGH_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testPassThroughRejectsCascade() throws IOException {
+        File config = navalConfig(), input = file(".inp", TRAFFIC);
+        System.setProperty(Main.PASS_THROUGH_PROPERTY, "true");
+        try {
+            run(config.getPath() + "," + config.getPath(), input.getPath());
+            fail("pass-through cascade accepted");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("cascade"));
+        } finally {
+            System.clearProperty(Main.PASS_THROUGH_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** An index of the messages in an input file.  A message starts at a
+ *  settings line (one beginning with '*') and runs up to the next one.
+ *  For each message, the index records the byte offset of its settings
+ *  line, the text of that line, and the settings in effect for the
+ *  message, so that Main can process any range of messages by seeking
+ *  directly to it.  The settings in effect differ from the line when it
+ *  gives no plugboard for a machine, which then keeps the plugboard
+ *  given by an earlier message.
+ *
+ *  An index file holds the settings lines, each as a 4-byte length
+ *  followed by its bytes and then the settings in effect in the same
+ *  form, then a table with a pair of 8-byte values per
+ *  message (the message's offset in the input and the position of its
+ *  settings line in the index file), and finally the length of the input,
+ *  the number of messages and the position of the table.
+ *  @author Kevin Chen
+ */
+class MessageIndex {
+
+    /** Index the messages in the file named ARGS[0], writing the index to
+     *  the file named ARGS[1], if present, and otherwise to ARGS[0] with
+     *  ".idx" appended. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 1 || args.length > 2) {
+                throw error("Usage: MessageIndex INPUT [INDEX]");
+            }
+            String index = args.length > 1 ? args[1] : defaultName(args[0]);
+            int n = build(args[0], index);
+            System.out.printf("%d messages indexed in %s%n", n, index);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Return the default name of the index of the file named INPUT. */
+    static String defaultName(String input) {
+        return input + ".idx";
+    }
+
+    /** Scan the file named INPUT once, writing an index of its messages to
+     *  the file named INDEX.  Return the number of messages. */
+    static int build(String input, String index) {
+        LineReader reader = LineReader.open(input, 0);
+        long[] offsets = new long[INITIAL_SIZE];
+        long[] positions = new long[INITIAL_SIZE];
+        List<String> plugboards = new ArrayList<>();
+        int count = 0;
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(index)))) {
+            out.writeInt(MAGIC);
+            long at = reader.offset();
+            for (int len = reader.readLine(); len >= 0;
+                 len = reader.readLine()) {
+                byte[] line = reader.lineBytes();
+                if (len > 0 && line[0] == '*') {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, 2 * count);
+                        positions = Arrays.copyOf(positions, 2 * count);
+                    }
+                    offsets[count] = at;
+                    positions[count] = out.size();
+                    count += 1;
+                    out.writeInt(len);
+                    out.write(line, 0, len);
+                    byte[] effective =
+                        effective(new String(line, 0, len), plugboards)
+                        .getBytes();
+                    out.writeInt(effective.length);
+                    out.write(effective);
+                }
+                at = reader.offset();
+            }
+            long table = out.size();
+            for (int i = 0; i < count; i++) {
+                out.writeLong(offsets[i]);
+                out.writeLong(positions[i]);
+            }
+            out.writeLong(at);
+            out.writeLong(count);
+            out.writeLong(table);
+        } catch (IOException excp) {
+            throw error("could not write index %s", index);
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    /** Return the settings in effect after the settings line LINE, in
+     *  the form of a settings line.  For each machine that LINE sets up
+     *  (one per '*') without giving plugboard cycles, the cycles last
+     *  given for it, PLUGBOARDS.get(K) for the K'th machine, are added.
+     *  PLUGBOARDS is updated with the cycles that LINE gives. */
+    static String effective(String line, List<String> plugboards) {
+        List<List<String>> machines = new ArrayList<>();
+        for (String token : line.trim().split("\\s+")) {
+            if (token.equals("*") || machines.isEmpty()) {
+                machines.add(new ArrayList<>());
+            }
+            machines.get(machines.size() - 1).add(token);
+        }
+        boolean changed = false;
+        List<String> result = new ArrayList<>();
+        for (int k = 0; k < machines.size(); k++) {
+            String settings = String.join(" ", machines.get(k));
+            String cycles = Main.plugboardCycles(settings);
+            while (plugboards.size() <= k) {
+                plugboards.add(null);
+            }
+            if (cycles != null) {
+                plugboards.set(k, cycles);
+            } else if (plugboards.get(k) != null) {
+                settings += " " + plugboards.get(k);
+                changed = true;
+            }
+            result.add(settings);
+        }
+        return changed ? String.join(" ", result) : line;
+    }
+
+    /** The index stored in the file named NAME, which is mapped into
+     *  memory read-only. */
+    MessageIndex(String name) {
+        try (FileChannel channel = FileChannel.open(Paths.get(name))) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+            int end = _map.limit();
+            if (end < Integer.BYTES + TRAILER_SIZE
+                || _map.getInt(0) != MAGIC) {
+                throw error("%s is not a message index", name);
+            }
+            _inputLength = _map.getLong(end - TRAILER_SIZE);
+            _size = (int) _map.getLong(end - 2 * Long.BYTES);
+            _table = (int) _map.getLong(end - Long.BYTES);
+        } catch (IOException excp) {
+            throw error("could not open index %s", name);
+        }
+    }
+
+    /** Return the number of messages in my index. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the length of the input from which my index was built. */
+    long inputLength() {
+        return _inputLength;
+    }
+
+    /** Return the offset in the input of the settings line of message K,
+     *  numbering from 0. */
+    long start(int k) {
+        checkMessage(k);
+        return _map.getLong(_table + k * ENTRY_SIZE);
+    }
+
+    /** Return the offset in the input just past the end of message K. */
+    long end(int k) {
+        checkMessage(k);
+        return k + 1 < _size ? start(k + 1) : _inputLength;
+    }
+
+    /** Return the settings line of message K. */
+    String settings(int k) {
+        checkMessage(k);
+        int posn = (int) _map.getLong(_table + k * ENTRY_SIZE + Long.BYTES);
+        byte[] line = new byte[_map.getInt(posn)];
+        _map.get(posn + Integer.BYTES, line);
+        return new String(line);
+    }
+
+    /** Return the settings in effect for message K, as a settings
+     *  line. */
+    String effectiveSettings(int k) {
+        checkMessage(k);
+        int posn = (int) _map.getLong(_table + k * ENTRY_SIZE + Long.BYTES);
+        posn += Integer.BYTES + _map.getInt(posn);
+        byte[] line = new byte[_map.getInt(posn)];
+        _map.get(posn + Integer.BYTES, line);
+        return new String(line);
+    }
+
+    /** Check that K is the number of a message in my index. */
+    private void checkMessage(int k) {
+        if (k < 0 || k >= _size) {
+            throw error("no message %d in index (%d messages)", k + 1, _size);
+        }
+    }
+
+    /** First four bytes of an index file. */
+    private static final int MAGIC = 0x454e4959;
+
+    /** Size of each entry in an index's table. */
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+    /** Size of the trailer of an index file. */
+    private static final int TRAILER_SIZE = 3 * Long.BYTES;
+
+    /** Initial capacity for message offsets while building. */
+    private static final int INITIAL_SIZE = 1024;
+
+    /** The contents of my index file. */
+    private final MappedByteBuffer _map;
+
+    /** The length of the indexed input. */
+    private final long _inputLength;
+
+    /** The number of messages. */
+    private final int _size;
+
+    /** Position of the table in _map. */
+    private final int _table;
+}
@@ -14,17 +14,24 @@ class MovingRotor extends Rotor {
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
-        _notches = new int[notches.length()];
-        char[] temp = notches.toCharArray();
-        for (int i = 0; i < temp.length; i++) {
-            _notches[i] = alphabet().toInt(temp[i]);
+        _notches = notches.codePoints().toArray();
+        for (int i = 0; i < _notches.length; i++) {
+            _notches[i] = alphabet().lookup(_notches[i]);
+            if (_notches[i] < 0) {
+                throw error("notch not in alphabet");
+            }
         }
     }
 
     @Override
-    boolean atNotch() {
+    boolean rotates() {
+        return true;
+    }
+
+    @Override
+    boolean notchAt(int posn) {
         for (int x : _notches) {
-            if (setting() == x) {
+            if (posn == x) {
                 return true;
             }
         }
@@ -0,0 +1,143 @@
+package enigma;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import static enigma.EnigmaException.*;
+
+/** A buffer of output bytes in front of an output stream.  Characters are
+ *  encoded with the platform's default charset as they are added, so that
+ *  no intermediate Strings are needed; ASCII characters are stored
+ *  directly, without an encoder.  Bytes are written from a reusable direct
+ *  buffer through a channel.  Keeps count of the bytes written.
+ *  @author Kevin Chen
+ */
+class OutputBuffer {
+
+    /** A buffer in front of OUT, into which WRITTEN bytes have already been
+     *  written. */
+    OutputBuffer(OutputStream out, long written) {
+        _out = out;
+        if (out instanceof FileOutputStream) {
+            _channel = ((FileOutputStream) out).getChannel();
+        } else {
+            _channel = Channels.newChannel(out);
+        }
+        _buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        _written = written;
+        _encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        _chars = CharBuffer.allocate(2);
+        _bytes = ByteBuffer.allocate((int) Math.ceil(
+            2 * _encoder.maxBytesPerChar()));
+    }
+
+    /** Add character C. */
+    void put(char c) {
+        if (c < ASCII_LIMIT && _chars.position() == 0) {
+            put((byte) c);
+        } else {
+            _chars.put(c);
+            if (!Character.isHighSurrogate(c) || _chars.position() == 2) {
+                _chars.flip();
+                _bytes.clear();
+                _encoder.reset();
+                _encoder.encode(_chars, _bytes, true);
+                _encoder.flush(_bytes);
+                _chars.clear();
+                for (int i = 0; i < _bytes.position(); i++) {
+                    put(_bytes.get(i));
+                }
+            }
+        }
+    }
+
+    /** Add the character with code point CP. */
+    void putCodePoint(int cp) {
+        if (Character.isBmpCodePoint(cp)) {
+            put((char) cp);
+        } else {
+            put(Character.highSurrogate(cp));
+            put(Character.lowSurrogate(cp));
+        }
+    }
+
+    /** Add byte B. */
+    void put(byte b) {
+        if (!_buf.hasRemaining()) {
+            drain();
+        }
+        _buf.put(b);
+        _written += 1;
+    }
+
+    /** Add a line terminator. */
+    void newline() {
+        put((byte) '\n');
+    }
+
+    /** Return the total number of bytes added, including those written
+     *  before I was created. */
+    long written() {
+        return _written;
+    }
+
+    /** Write all buffered bytes to my stream and flush it. */
+    void flush() {
+        drain();
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Write all buffered bytes to my stream. */
+    private void drain() {
+        try {
+            _buf.flip();
+            while (_buf.hasRemaining()) {
+                _channel.write(_buf);
+            }
+            _buf.clear();
+        } catch (IOException excp) {
+            throw error("could not write output: %s", excp.getMessage());
+        }
+    }
+
+    /** Size of my buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Characters below this are encoded as themselves. */
+    private static final char ASCII_LIMIT = 0x80;
+
+    /** The stream I write to. */
+    private final OutputStream _out;
+
+    /** Channel writing to _out. */
+    private final WritableByteChannel _channel;
+
+    /** Bytes not yet written to _out. */
+    private final ByteBuffer _buf;
+
+    /** Total number of bytes added. */
+    private long _written;
+
+    /** Encoder for characters outside ASCII. */
+    private final CharsetEncoder _encoder;
+
+    /** Characters awaiting encoding (a surrogate pair at most). */
+    private final CharBuffer _chars;
+
+    /** Result of encoding _chars. */
+    private final ByteBuffer _bytes;
+}
@@ -18,21 +18,56 @@ class Permutation {
             throw error("Wrongly formatted cycle entered");
         }
         _alphabet = alphabet;
-        _condensed = cycles.replaceAll("[ (]", "").split("\\)");
+        int n = alphabet.size();
+        _forward = IndexTable.create(n, n - 1);
+        _inverse = IndexTable.create(n, n - 1);
+        int start = -1;
+        for (int i = 0; i < cycles.length(); ) {
+            int cp = cycles.codePointAt(i);
+            if (cp == '(') {
+                if (start >= 0) {
+                    throw error("Wrongly formatted cycle entered");
+                }
+                start = i + 1;
+            } else if (cp == ')') {
+                if (start < 0) {
+                    throw error("Wrongly formatted cycle entered");
+                }
+                addCycle(cycles.substring(start, i));
+                start = -1;
+            } else if (start < 0) {
+                throw error("Wrongly formatted cycle entered");
+            }
+            i += Character.charCount(cp);
+        }
+        for (int i = 0; i < n; i++) {
+            if (_forward.get(i) < 0) {
+                _forward.set(i, i);
+                _inverse.set(i, i);
+            }
+        }
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     private void addCycle(String cycle) {
-        for (int i = 0; i < _condensed.length; i++) {
-            for (int j = 0; j < cycle.length(); j++) {
-                if (_condensed[i].indexOf(cycle.charAt(j)) != -1) {
-                    throw error("Can't add cycle with "
-                            + "character already in other cycle!");
-                }
+        int[] members = cycle.codePoints().toArray();
+        for (int i = 0; i < members.length; i++) {
+            int c = _alphabet.lookup(members[i]);
+            if (c < 0) {
+                throw error("Cycle character not in alphabet");
+            }
+            members[i] = c;
+        }
+        for (int i = 0; i < members.length; i++) {
+            int from = members[i], to = members[(i + 1) % members.length];
+            if (_forward.get(from) >= 0) {
+                throw error("Can't add cycle with "
+                        + "character already in other cycle!");
             }
+            _forward.set(from, to);
+            _inverse.set(to, from);
         }
-        _condensed[_condensed.length] = cycle;
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -52,36 +87,13 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char temp = _alphabet.toChar(wrap(p));
-        for (int i = 0; i < _condensed.length; i++) {
-            if (_condensed[i].indexOf(temp) != -1) {
-                int x = _condensed[i].indexOf(temp);
-                if (x == _condensed[i].length() - 1) {
-                    return _alphabet.toInt(_condensed[i].charAt(0));
-                } else {
-                    return _alphabet.toInt(_condensed[i].charAt(x + 1));
-                }
-            }
-        }
-        return wrap(p);
+        return _forward.get(wrap(p));
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char temp = _alphabet.toChar(c);
-        for (int i = 0; i < _condensed.length; i++) {
-            if (_condensed[i].indexOf(temp) != -1) {
-                int x = _condensed[i].indexOf(temp);
-                if (x == 0) {
-                    return _alphabet.toInt(_condensed[i].charAt
-                            (_condensed[i].length() - 1));
-                } else {
-                    return _alphabet.toInt(_condensed[i].charAt(x - 1));
-                }
-            }
-        }
-        return c;
+        return _inverse.get(wrap(c));
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -108,8 +120,7 @@ class Permutation {
      *  permutation for which no value maps to itself). */
     boolean derangement() {
         for (int i = 0; i < _alphabet.size(); i++) {
-            int x = permute(i);
-            if (_alphabet.toChar(i) == _alphabet.toChar(x)) {
+            if (_forward.get(i) == i) {
                 return false;
             }
         }
@@ -119,6 +130,9 @@ class Permutation {
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** An array of all Permutation cycles. */
-    private String[] _condensed;
+    /** Maps each index to its image. */
+    private final IndexTable _forward;
+
+    /** Maps each index to its preimage. */
+    private final IndexTable _inverse;
 }
@@ -94,4 +94,39 @@ public class PermutationTest {
         perm = new Permutation("(ABCDEFGHIJK) (LMNOPQRSTUVWXYZ)", UPPER);
         assertEquals(perm.derangement(), true);
     }
+
+    @Test
+    public void testCodePointAlphabet() {
+        Alphabet alpha = new Alphabet("\u0391\u0392\ud835\udc9c\ud835\udc9dZ");
+        assertEquals(5, alpha.size());
+        assertEquals(2, alpha.lookup(0x1d49c));
+        assertEquals(-1, alpha.lookup('A'));
+        perm = new Permutation("(\u0391\ud835\udc9c) (\u0392Z\ud835\udc9d)",
+                               alpha);
+        assertEquals(2, perm.permute(0));
+        assertEquals(0, perm.permute(2));
+        assertEquals(4, perm.permute(1));
+        assertEquals(1, perm.invert(4));
+        assertEquals(true, perm.derangement());
+    }
+
+    @Test
+    public void testLargeAlphabet() {
+        StringBuilder chars = new StringBuilder();
+        for (int c = 0x4e00; c < 0x4e00 + 400; c += 1) {
+            chars.append((char) c);
+        }
+        Alphabet alpha = new Alphabet(chars.toString());
+        perm = new Permutation("(" + chars + ")", alpha);
+        assertEquals(400, perm.size());
+        for (int i = 0; i < 400; i += 1) {
+            assertEquals((i + 1) % 400, perm.permute(i));
+            assertEquals(i, perm.invert(perm.permute(i)));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNotInAlphabet() {
+        perm = new Permutation("(AB1)", UPPER);
+    }
 }
@@ -0,0 +1,283 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The permutation applied by the rotors and reflector of one rotor
+ *  order at every position, stored in a file that is mapped into memory
+ *  read-only, so that any number of engines and processes can share it
+ *  without computing it or holding it on the heap.  Positions are
+ *  numbered by reading the settings of the rotors after the reflector as
+ *  the digits of a number in base size(), leftmost first; entry
+ *  position * size() + c is the conversion of input index C at that
+ *  position, without the plugboard.
+ *
+ *  An atlas file holds the size of the alphabet, the number of rotors,
+ *  the width (1 or 2 bytes) of each entry, a digest of the machine (see
+ *  digest), the rotor order, as a 4-byte length followed by its bytes,
+ *  and then the entries.  An engine uses an atlas only if the digests
+ *  agree, so that a rotor rewired under the same name is never
+ *  converted through a stale atlas.
+ *  @author Kevin Chen
+ */
+class PositionAtlas {
+
+    /** Write an atlas of the rotor order ARGS[2 ..] of the machine
+     *  configured by the file ARGS[0] to the file ARGS[1]. */
+    public static void main(String... args) {
+        try {
+            if (args.length < 3) {
+                throw error("Usage: PositionAtlas CONFIG ATLAS REFLECTOR "
+                            + "ROTOR ...");
+            }
+            LineReader config = LineReader.open(args[0], 0);
+            Machine machine;
+            try {
+                machine = Main.readMachine(config);
+            } finally {
+                config.close();
+            }
+            long n = write(machine,
+                           Arrays.copyOfRange(args, 2, args.length), args[1]);
+            System.out.printf("%d positions written to %s%n", n, args[1]);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Write to the file named NAME the atlas of MACHINE with the rotors
+     *  named ORDER (ORDER[0] naming the reflector).  MACHINE's rotors
+     *  and plugboard are changed.  Return the number of positions. */
+    static long write(Machine machine, String[] order, String name) {
+        if (order.length != machine.numRotors()) {
+            throw error("rotor order must name %d rotors",
+                        machine.numRotors());
+        }
+        machine.insertRotors(order);
+        machine.setPlugboard(null);
+        int n = machine.alphabet().size();
+        int width = n <= BYTE_LIMIT ? 1 : Short.BYTES;
+        if (n > SHORT_LIMIT) {
+            throw error("alphabet too large for an atlas");
+        }
+        long count = 1;
+        for (int i = 1; i < order.length; i++) {
+            count *= n;
+        }
+        if (count * n * width > MAX_TABLE) {
+            throw error("atlas of %d positions is too large", count);
+        }
+        String[] names = new String[order.length];
+        Rotor[] rotors = new Rotor[order.length];
+        for (int i = 0; i < names.length; i++) {
+            rotors[i] = machine.rotor(i);
+            names[i] = rotors[i].name();
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(n);
+            out.writeInt(order.length);
+            out.writeInt(width);
+            out.write(digest(machine.alphabet(), machine.numPawls(),
+                             rotors));
+            byte[] orderBytes = String.join(" ", names).getBytes();
+            out.writeInt(orderBytes.length);
+            out.write(orderBytes);
+            int[] positions = new int[order.length];
+            for (long k = 0; k < count; k++) {
+                machine.setPositions(positions);
+                for (int c : machine.permutation()) {
+                    if (width == 1) {
+                        out.writeByte(c);
+                    } else {
+                        out.writeShort(c);
+                    }
+                }
+                for (int i = positions.length - 1; i > 0; i--) {
+                    positions[i] += 1;
+                    if (positions[i] < n) {
+                        break;
+                    }
+                    positions[i] = 0;
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not write atlas %s", name);
+        }
+        return count;
+    }
+
+    /** Return a digest of a machine with alphabet ALPHABET and PAWLS
+     *  pawls whose slots hold ROTORS, reflector first: of the characters
+     *  of the alphabet, the number of pawls and slots, and the kind,
+     *  permutation and notches of each rotor. */
+    static byte[] digest(Alphabet alphabet, int pawls, Rotor[] rotors) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException excp) {
+            throw error("no %s digest available", DIGEST_ALGORITHM);
+        }
+        int n = alphabet.size();
+        try (DataOutputStream out = new DataOutputStream(
+                 new DigestOutputStream(OutputStream.nullOutputStream(),
+                                        digest))) {
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(alphabet.toCodePoint(i));
+            }
+            out.writeInt(pawls);
+            out.writeInt(rotors.length);
+            for (Rotor rotor : rotors) {
+                out.writeBoolean(rotor.reflecting());
+                out.writeBoolean(rotor.rotates());
+                for (int i = 0; i < n; i++) {
+                    out.writeInt(rotor.permutation().permute(i));
+                }
+                for (int p = 0; p < n; p++) {
+                    out.writeBoolean(rotor.notchAt(p));
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not digest machine");
+        }
+        return digest.digest();
+    }
+
+    /** Return the atlases named by ATLAS_PROPERTY, a comma-separated list
+     *  of files, which are mapped once and shared. */
+    static synchronized List<PositionAtlas> shared() {
+        if (_shared == null) {
+            List<PositionAtlas> result = new ArrayList<>();
+            String names = System.getProperty(ATLAS_PROPERTY, "").trim();
+            if (!names.isEmpty()) {
+                for (String name : names.split(",")) {
+                    result.add(new PositionAtlas(name.trim()));
+                }
+            }
+            _shared = Collections.unmodifiableList(result);
+        }
+        return _shared;
+    }
+
+    /** The atlas stored in the file named NAME, which is mapped into
+     *  memory read-only. */
+    PositionAtlas(String name) {
+        try (FileChannel channel = FileChannel.open(Paths.get(name))) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw error("%s is not a position atlas", name);
+            }
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                         channel.size());
+            if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC) {
+                throw error("%s is not a position atlas", name);
+            }
+            _size = map.getInt(Integer.BYTES);
+            int slots = map.getInt(2 * Integer.BYTES);
+            _width = map.getInt(3 * Integer.BYTES);
+            _digest = new byte[DIGEST_SIZE];
+            map.get(4 * Integer.BYTES, _digest);
+            byte[] order = new byte[map.getInt(HEADER_SIZE - Integer.BYTES)];
+            map.get(HEADER_SIZE, order);
+            _slots = new String(order).split(" ").length;
+            long entries = _size;
+            for (int i = 1; i < slots; i++) {
+                entries *= _size;
+            }
+            int start = HEADER_SIZE + order.length;
+            if (_slots != slots || (_width != 1 && _width != Short.BYTES)
+                || map.limit() != start + entries * _width) {
+                throw error("%s is not a position atlas", name);
+            }
+            _table = map.slice(start, map.limit() - start);
+        } catch (IOException excp) {
+            throw error("could not open atlas %s", name);
+        }
+    }
+
+    /** Return the size of my alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return true iff I am the atlas of a machine with SLOTS slots whose
+     *  digest is DIGEST. */
+    boolean matches(int slots, byte[] digest) {
+        return slots == _slots && Arrays.equals(digest, _digest);
+    }
+
+    /** Return entry K: the conversion of K % size() at position
+     *  K / size(). */
+    int get(int k) {
+        if (_width == 1) {
+            return _table.get(k) & BYTE_MASK;
+        }
+        return _table.getShort(k * Short.BYTES) & SHORT_MASK;
+    }
+
+    /** Name of the system property listing atlases for AtlasEngine. */
+    static final String ATLAS_PROPERTY = "enigma.atlas";
+
+    /** First four bytes of an atlas file. */
+    private static final int MAGIC = 0x454e4144;
+
+    /** Algorithm of the digest of a machine. */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /** Size in bytes of the digest of a machine. */
+    private static final int DIGEST_SIZE = 32;
+
+    /** Size of the header up to the bytes of the rotor order. */
+    private static final int HEADER_SIZE = 5 * Integer.BYTES + DIGEST_SIZE;
+
+    /** Largest alphabet whose entries fit in a byte. */
+    private static final int BYTE_LIMIT = 256;
+
+    /** Largest alphabet whose entries fit in a short. */
+    private static final int SHORT_LIMIT = 1 << 16;
+
+    /** Largest table, in bytes, that one mapping can hold. */
+    private static final long MAX_TABLE = Integer.MAX_VALUE - (1 << 16);
+
+    /** Mask giving the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Mask giving the unsigned value of a short. */
+    private static final int SHORT_MASK = 0xffff;
+
+    /** The atlases named by ATLAS_PROPERTY, once loaded. */
+    private static List<PositionAtlas> _shared;
+
+    /** The size of my alphabet. */
+    private final int _size;
+
+    /** The width in bytes of each entry. */
+    private final int _width;
+
+    /** The number of my rotors. */
+    private final int _slots;
+
+    /** The digest of the machine whose atlas I am. */
+    private final byte[] _digest;
+
+    /** My entries. */
+    private final ByteBuffer _table;
+}
@@ -0,0 +1,137 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for PositionAtlas and AtlasEngine.
+ *  @author Kevin Chen
+ */
+public class PositionAtlasTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** Return an atlas of the naval machine with rotors ORDER. */
+    private static PositionAtlas atlas(String... order) throws IOException {
+        File file = File.createTempFile("atlas", ".map");
+        file.deleteOnExit();
+        long n = PositionAtlas.write(navalMachine(), order, file.getPath());
+        assertEquals(26 * 26 * 26 * 26, n);
+        return new PositionAtlas(file.getPath());
+    }
+
+    /** Return LENGTH random upper-case letters, using RANDOM. */
+    private static String text(Random random, int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            result.append(UPPER_STRING.charAt(random.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void testMatchesReference() throws IOException {
+        List<PositionAtlas> atlases =
+            Arrays.asList(atlas("B", "Beta", "I", "II", "III"));
+        String[] settings = {
+            "* B BETA I II III AAAA",
+            "* B Beta I II III ZQDU (AQ) (EP) (TZ)",
+            "* B BETA I II III MXEV (YF) (ZH)",
+            "* C GAMMA IV V VI QZXJ (AB)",
+        };
+        Random random = new Random(7);
+        for (String setting : settings) {
+            Machine reference = navalMachine();
+            MachineEngine engine = new AtlasEngine(navalMachine(), atlases);
+            Main.setUp(reference, setting);
+            Main.setUp(engine, setting);
+            String msg = text(random, 2000);
+            assertEquals(msg(setting, "conversion"), reference.convert(msg),
+                         engine.convert(msg));
+            assertArrayEquals(reference.positions(), engine.positions());
+        }
+    }
+
+    @Test
+    public void testRewiredRotorRejected() throws IOException {
+        String[] order = { "B", "Beta", "I", "II", "III" };
+        PositionAtlas atlas = atlas(order);
+        assertTrue(atlas.matches(5, digest(rewired(NAVALA.get("I")),
+                                           order)));
+        assertFalse(atlas.matches(5, digest(rewired(NAVALA.get("II")),
+                                            order)));
+
+        String setting = "* B BETA I II III ZQDU (AQ) (EP) (TZ)";
+        Machine reference = rewired(NAVALA.get("II"));
+        MachineEngine engine = new AtlasEngine(rewired(NAVALA.get("II")),
+                                               Arrays.asList(atlas));
+        Main.setUp(reference, setting);
+        Main.setUp(engine, setting);
+        String msg = text(new Random(11), 2000);
+        assertEquals(reference.convert(msg), engine.convert(msg));
+        assertArrayEquals(reference.positions(), engine.positions());
+    }
+
+    /** Return the digest of MACHINE with the rotors ORDER inserted. */
+    private static byte[] digest(Machine machine, String[] order) {
+        machine.insertRotors(order);
+        Rotor[] rotors = new Rotor[order.length];
+        for (int i = 0; i < rotors.length; i++) {
+            rotors[i] = machine.rotor(i);
+        }
+        return PositionAtlas.digest(machine.alphabet(), machine.numPawls(),
+                                    rotors);
+    }
+
+    /** Return a naval machine whose rotor I has the wiring CYCLES and
+     *  its usual notch. */
+    private static Machine rewired(String cycles) {
+        Machine naval = navalMachine();
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (String name : NAVALA.keySet()) {
+            if (name.equals("I")) {
+                rotors.add(new MovingRotor(name,
+                                           new Permutation(cycles, UPPER),
+                                           NAVAL_NOTCHES.get(name)));
+            } else {
+                rotors.add(naval.catalog().get(name));
+            }
+        }
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadWidthRejected() throws IOException {
+        File file = File.createTempFile("atlas", ".map");
+        file.deleteOnExit();
+        long n = PositionAtlas.write(navalMachine(),
+                                     new String[] { "B", "Beta", "I", "II",
+                                                    "III" },
+                                     file.getPath());
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(3 * Integer.BYTES);
+            raw.writeInt(4);
+            raw.setLength(raw.length() + 3 * n);
+        }
+        new PositionAtlas(file.getPath());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testWrongRotorCount() {
+        PositionAtlas.write(navalMachine(), new String[] { "B", "I" },
+                            "unused.map");
+    }
+}
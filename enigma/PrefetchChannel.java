@@ -0,0 +1,126 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/** A channel delivering the bytes of an input stream, which a thread of
+ *  its own reads ahead into chunks.  Chunks come from a fixed pool and
+ *  pass between the threads through SpscRings, so reading (and any
+ *  decompression done by the stream) overlaps with the work of the
+ *  thread reading the channel.
+ *  @author Kevin Chen
+ */
+class PrefetchChannel implements ReadableByteChannel {
+
+    /** A channel reading IN, which it takes over. */
+    PrefetchChannel(InputStream in) {
+        _in = in;
+        _free = new SpscRing<>(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            _free.offer(ByteBuffer.allocate(CHUNK_SIZE));
+        }
+        _full = new SpscRing<>(POOL_SIZE);
+        Thread thread = new Thread(this::prefetch, "prefetch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (_chunk != null && _chunk != END && !_chunk.hasRemaining()) {
+            _free.put(_chunk);
+            _chunk = null;
+        }
+        if (_chunk == null) {
+            _chunk = _full.take();
+        }
+        if (_chunk == null || _chunk == END) {
+            _chunk = END;
+            if (_failure != null) {
+                throw _failure;
+            }
+            return -1;
+        }
+        int n = Math.min(dst.remaining(), _chunk.remaining());
+        dst.put(_chunk.array(), _chunk.position(), n);
+        _chunk.position(_chunk.position() + n);
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !_closed;
+    }
+
+    @Override
+    public void close() {
+        _closed = true;
+        _free.cancel();
+        _full.cancel();
+    }
+
+    /** Fill chunks from _in and pass them on until _in is exhausted, an
+     *  error occurs or I am closed. */
+    private void prefetch() {
+        try {
+            for (ByteBuffer chunk = _free.take(); chunk != null;
+                 chunk = _free.take()) {
+                byte[] bytes = chunk.array();
+                int n = 0;
+                while (n < bytes.length) {
+                    int k = _in.read(bytes, n, bytes.length - n);
+                    if (k < 0) {
+                        break;
+                    }
+                    n += k;
+                }
+                chunk.clear().limit(n);
+                if (n > 0 && !_full.put(chunk)) {
+                    return;
+                } else if (n < bytes.length) {
+                    break;
+                }
+            }
+        } catch (IOException excp) {
+            _failure = excp;
+        } finally {
+            try {
+                _in.close();
+            } catch (IOException excp) {
+                if (_failure == null) {
+                    _failure = excp;
+                }
+            }
+        }
+        _full.put(END);
+    }
+
+    /** Size of each chunk. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Number of chunks in the pool. */
+    private static final int POOL_SIZE = 8;
+
+    /** Marks the end of the stream of chunks. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** The stream I read. */
+    private final InputStream _in;
+
+    /** Empty chunks, returned by the reader of the channel. */
+    private final SpscRing<ByteBuffer> _free;
+
+    /** Filled chunks, in order. */
+    private final SpscRing<ByteBuffer> _full;
+
+    /** The chunk being read, or null. */
+    private ByteBuffer _chunk;
+
+    /** The error that stopped reading, or null. */
+    private volatile IOException _failure;
+
+    /** True once I am closed. */
+    private volatile boolean _closed;
+}
@@ -0,0 +1,620 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static enigma.EnigmaException.*;
+
+/** A catalog of the cycle structures of indicator permutations, after
+ *  Rejewski.  When each message key is enciphered twice at the start of
+ *  a day's traffic, the permutations A .. F that the machine applies to
+ *  the six indicator characters are linked: for every message, the
+ *  products AD, BE and CF take its first, second and third enciphered
+ *  characters to its fourth, fifth and sixth.  Given enough messages,
+ *  the three products can be read off the indicators alone, and the
+ *  lengths of their cycles do not depend on the plugboard, so they
+ *  narrow the rotor order and start position down to a few candidates.
+ *
+ *  The catalog records a signature of these cycle lengths for every
+ *  rotor order and every start position of the moving rotors (fixed
+ *  rotors are held at one setting).  A catalog file holds the size of
+ *  the alphabet, the numbers of rotors and pawls, the setting of the
+ *  fixed rotors and the rotor orders, each string as a 4-byte length
+ *  followed by its bytes, then a table of entries sorted by signature,
+ *  each giving a signature, a rotor order and a start position as
+ *  4-byte values, and finally the number of entries and the position of
+ *  the table.  Lookups map the file into memory and binary-search it.
+ *  @author Kevin Chen
+ */
+class RejewskiCatalog {
+
+    /** Build or search a catalog, according to ARGS:
+     *      build CONFIG CATALOG [ROTOR ...]
+     *  catalogs the machine configured by the file CONFIG in the file
+     *  CATALOG, using only the rotors named ROTOR, if any are given, and
+     *  holding fixed rotors at the setting given by FIXED_PROPERTY.
+     *      find CONFIG CATALOG INDICATORS
+     *  prints a settings line for each rotor order and start position in
+     *  CATALOG that agrees with the indicators, one to a line, in the
+     *  file INDICATORS. */
+    public static void main(String... args) {
+        try {
+            if (args.length >= 3 && args[0].equals("build")) {
+                String config = args[1];
+                List<String> rotors = Arrays.asList(args).subList(3,
+                                                               args.length);
+                long n = build(() -> readMachine(config), rotors,
+                               System.getProperty(FIXED_PROPERTY), args[2]);
+                System.out.printf("%d settings cataloged in %s%n", n,
+                                  args[2]);
+                return;
+            } else if (args.length == 4 && args[0].equals("find")) {
+                Machine machine = readMachine(args[1]);
+                RejewskiCatalog catalog = new RejewskiCatalog(args[2]);
+                int[][] products =
+                    fromIndicators(readLines(args[3]), machine.alphabet());
+                System.out.printf("cycles: %s%n", describe(products));
+                for (String line : catalog.find(machine, products)) {
+                    System.out.println(line);
+                }
+                return;
+            }
+            throw error("Usage: RejewskiCatalog build CONFIG CATALOG "
+                        + "[ROTOR ...] | find CONFIG CATALOG INDICATORS");
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Write to the file named CATALOG the signatures of every rotor
+     *  order and start position of the machines returned by MACHINES,
+     *  which must all be configured alike and share no rotors.  Only the
+     *  rotors named in ROTORS are used, unless it is empty.  FIXED gives
+     *  the setting of the fixed rotors, or is null to set them all to
+     *  the first character of the alphabet.  Rotor orders are divided
+     *  among threads, each with its own machine.  Return the number of
+     *  entries written. */
+    static long build(Supplier<Machine> machines, Collection<String> rotors,
+                      String fixed, String catalog) {
+        Machine first = machines.get();
+        List<String[]> orders = orders(first, rotors);
+        int[] fixedPositions = fixedPositions(first, fixed);
+        int n = first.alphabet().size();
+        long perOrder = 1;
+        for (int i = 0; i < first.numPawls(); i++) {
+            perOrder *= n;
+        }
+        long total = perOrder * orders.size();
+        if (perOrder > MAX_ENTRIES || total > MAX_ENTRIES) {
+            throw error("catalog of %d settings exceeds the limit of %d; "
+                        + "name fewer rotors", total, MAX_ENTRIES);
+        }
+        long[] keys = new long[(int) total];
+        int count = (int) perOrder;
+
+        int threads = Math.min(orders.size(),
+                               Runtime.getRuntime().availableProcessors());
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            Machine machine = t == 0 ? first : machines.get();
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int k = next.getAndIncrement(); k < orders.size()
+                             && failure.get() == null;
+                         k = next.getAndIncrement()) {
+                        catalogOrder(machine, orders.get(k), fixedPositions,
+                                     keys, k * count, count);
+                    }
+                } catch (RuntimeException excp) {
+                    failure.compareAndSet(null, excp);
+                }
+            }, "catalog-" + t);
+            workers[t].start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("catalog build interrupted");
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        Arrays.parallelSort(keys);
+        write(first, fixedPositions, orders, keys, count, catalog);
+        return total;
+    }
+
+    /** The catalog stored in the file named NAME, which is mapped into
+     *  memory read-only. */
+    RejewskiCatalog(String name) {
+        try (FileChannel channel = FileChannel.open(Paths.get(name))) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+            int end = _map.limit();
+            if (end < HEADER_SIZE + TRAILER_SIZE
+                || _map.getInt(0) != MAGIC) {
+                throw error("%s is not a Rejewski catalog", name);
+            }
+            _size = _map.getInt(Integer.BYTES);
+            _numRotors = _map.getInt(2 * Integer.BYTES);
+            _pawls = _map.getInt(3 * Integer.BYTES);
+            int posn = HEADER_SIZE;
+            _fixed = string(posn);
+            posn += Integer.BYTES + _fixed.getBytes().length;
+            _orders = new String[_map.getInt(posn)][];
+            posn += Integer.BYTES;
+            for (int k = 0; k < _orders.length; k++) {
+                String order = string(posn);
+                posn += Integer.BYTES + order.getBytes().length;
+                _orders[k] = order.split(" ");
+            }
+            _entries = (int) _map.getLong(end - TRAILER_SIZE);
+            _table = (int) _map.getLong(end - Long.BYTES);
+        } catch (IOException excp) {
+            throw error("could not open catalog %s", name);
+        }
+    }
+
+    /** Return the number of entries in my catalog. */
+    int size() {
+        return _entries;
+    }
+
+    /** Return the settings lines (without plugboard) of the rotor orders
+     *  and start positions in my catalog at which MACHINE, which must be
+     *  configured as the one cataloged, gives indicator products whose
+     *  cycles have the same lengths as PRODUCTS (AD, BE and CF). */
+    List<String> find(Machine machine, int[][] products) {
+        if (machine.alphabet().size() != _size
+            || machine.numRotors() != _numRotors
+            || machine.numPawls() != _pawls) {
+            throw error("catalog is for a different configuration");
+        }
+        int[][] wanted = new int[products.length][];
+        for (int i = 0; i < products.length; i++) {
+            wanted[i] = cycleLengths(products[i]);
+        }
+        int signature = signature(wanted);
+        List<String> result = new ArrayList<>();
+        for (int k = firstEntry(signature);
+             k < _entries && signatureAt(k) == signature; k += 1) {
+            int base = _table + k * ENTRY_SIZE;
+            String[] order = _orders[_map.getInt(base + Integer.BYTES)];
+            String setting = _fixed
+                + setting(machine.alphabet(),
+                          _map.getInt(base + 2 * Integer.BYTES), _pawls);
+            machine.insertRotors(order);
+            machine.setPlugboard(null);
+            machine.setRotors(setting);
+            int[][] found = products(machine);
+            boolean same = true;
+            for (int i = 0; i < found.length; i++) {
+                same &= Arrays.equals(wanted[i], cycleLengths(found[i]));
+            }
+            if (same) {
+                result.add("* " + String.join(" ", order) + " " + setting);
+            }
+        }
+        return result;
+    }
+
+    /** Return the products AD, BE and CF given by INDICATORS, each of
+     *  which is six characters of ALPHABET (ignoring whitespace) giving
+     *  a message key enciphered twice.  Blank indicators are skipped.
+     *  The indicators must determine each product completely. */
+    static int[][] fromIndicators(List<String> indicators,
+                                  Alphabet alphabet) {
+        int n = alphabet.size();
+        int half = INDICATOR_LENGTH / 2;
+        int[][] result = new int[half][n];
+        for (int[] product : result) {
+            Arrays.fill(product, -1);
+        }
+        for (String indicator : indicators) {
+            int[] chars = indicator.replaceAll("\\s+", "").codePoints()
+                .toArray();
+            if (chars.length == 0) {
+                continue;
+            } else if (chars.length != INDICATOR_LENGTH) {
+                throw error("indicator '%s' is not %d characters",
+                            indicator, INDICATOR_LENGTH);
+            }
+            for (int i = 0; i < INDICATOR_LENGTH; i++) {
+                chars[i] = alphabet.lookup(chars[i]);
+                if (chars[i] < 0) {
+                    throw error("indicator '%s' not in alphabet", indicator);
+                }
+            }
+            for (int i = 0; i < half; i++) {
+                int from = chars[i], to = chars[i + half];
+                if (result[i][from] >= 0 && result[i][from] != to) {
+                    throw error("indicator '%s' is inconsistent with "
+                                + "earlier ones", indicator);
+                }
+                result[i][from] = to;
+            }
+        }
+        for (int i = 0; i < half; i++) {
+            boolean[] seen = new boolean[n];
+            for (int from = 0; from < n; from++) {
+                int to = result[i][from];
+                if (to < 0) {
+                    throw error("too few indicators to determine %s",
+                                PRODUCT_NAMES[i]);
+                } else if (seen[to]) {
+                    throw error("indicators do not give a permutation "
+                                + "for %s", PRODUCT_NAMES[i]);
+                }
+                seen[to] = true;
+            }
+        }
+        return result;
+    }
+
+    /** Return the products AD, BE and CF of the permutations that MACHINE
+     *  applies to the six characters of an indicator enciphered from its
+     *  current position.  MACHINE is advanced six times. */
+    static int[][] products(Machine machine) {
+        int[][] perms = new int[INDICATOR_LENGTH][];
+        for (int i = 0; i < INDICATOR_LENGTH; i++) {
+            machine.advanceAll();
+            perms[i] = machine.permutation();
+        }
+        int half = INDICATOR_LENGTH / 2;
+        int[][] result = new int[half][perms[0].length];
+        for (int i = 0; i < half; i++) {
+            for (int c = 0; c < result[i].length; c++) {
+                result[i][c] = perms[i + half][perms[i][c]];
+            }
+        }
+        return result;
+    }
+
+    /** Return a description of the cycle lengths of PRODUCTS, such as
+     *  "13 13 | 10 10 3 3 | 6 6 5 5 2 2". */
+    static String describe(int[][] products) {
+        StringBuilder result = new StringBuilder();
+        for (int[] product : products) {
+            if (result.length() > 0) {
+                result.append(" |");
+            }
+            for (int length : cycleLengths(product)) {
+                result.append(result.length() > 0 ? " " : "").append(length);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return the lengths of the cycles of PERM, longest first. */
+    static int[] cycleLengths(int[] perm) {
+        boolean[] seen = new boolean[perm.length];
+        int[] result = new int[perm.length];
+        int count = 0;
+        for (int c = 0; c < perm.length; c++) {
+            int length = 0;
+            for (int x = c; !seen[x]; x = perm[x]) {
+                seen[x] = true;
+                length += 1;
+            }
+            if (length > 0) {
+                result[count] = length;
+                count += 1;
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int t = result[i];
+            result[i] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+    /** Return the signature of the cycle lengths LENGTHS of the three
+     *  indicator products: an FNV-1a hash of the lengths. */
+    static int signature(int[][] lengths) {
+        int result = FNV_BASIS;
+        for (int[] product : lengths) {
+            for (int length : product) {
+                result = (result ^ length) * FNV_PRIME;
+            }
+            result *= FNV_PRIME;
+        }
+        return result;
+    }
+
+    /** Return the rotor orders of MACHINE: a reflector, then distinct
+     *  fixed rotors in the slots without pawls, then distinct moving
+     *  rotors.  Only rotors named in ONLY are used, unless it is
+     *  empty. */
+    private static List<String[]> orders(Machine machine,
+                                         Collection<String> only) {
+        RotorCatalog catalog = machine.catalog();
+        Set<String> wanted = new HashSet<>();
+        for (String name : only) {
+            if (catalog.get(name) == null) {
+                throw error("no rotor named %s", name);
+            }
+            wanted.add(name.toUpperCase());
+        }
+        List<String> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (String name : catalog.names()) {
+            if (!wanted.isEmpty() && !wanted.contains(name.toUpperCase())) {
+                continue;
+            }
+            Rotor rotor = catalog.get(name);
+            if (rotor.reflecting()) {
+                reflectors.add(name);
+            } else if (rotor.rotates()) {
+                moving.add(name);
+            } else {
+                fixed.add(name);
+            }
+        }
+        List<String[]> result = new ArrayList<>();
+        String[] order = new String[machine.numRotors()];
+        int firstMoving = order.length - machine.numPawls();
+        for (String reflector : reflectors) {
+            order[0] = reflector;
+            arrange(order, 1, firstMoving, fixed, moving, result);
+        }
+        if (result.isEmpty()) {
+            throw error("too few rotors to fill the machine");
+        }
+        return result;
+    }
+
+    /** Add to RESULT every way of completing ORDER from slot K on with
+     *  distinct names from FIXED, in slots before FIRSTMOVING, and from
+     *  MOVING. */
+    private static void arrange(String[] order, int k, int firstMoving,
+                                List<String> fixed, List<String> moving,
+                                List<String[]> result) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        List<String> used = Arrays.asList(order).subList(1, k);
+        for (String name : k < firstMoving ? fixed : moving) {
+            if (!used.contains(name)) {
+                order[k] = name;
+                arrange(order, k + 1, firstMoving, fixed, moving, result);
+            }
+        }
+    }
+
+    /** Return the alphabet indices of the settings of the fixed rotors of
+     *  MACHINE given by FIXED, or of the first character of the alphabet
+     *  if FIXED is null. */
+    private static int[] fixedPositions(Machine machine, String fixed) {
+        int[] result =
+            new int[machine.numRotors() - 1 - machine.numPawls()];
+        if (fixed == null) {
+            return result;
+        }
+        int[] chars = fixed.codePoints().toArray();
+        if (chars.length != result.length) {
+            throw error("fixed rotor setting must be %d characters",
+                        result.length);
+        }
+        for (int i = 0; i < chars.length; i++) {
+            result[i] = machine.alphabet().lookup(chars[i]);
+            if (result[i] < 0) {
+                throw error("fixed rotor setting not in alphabet");
+            }
+        }
+        return result;
+    }
+
+    /** Store in KEYS[START .. START+COUNT-1] the signature of each of the
+     *  COUNT start positions of the moving rotors of MACHINE with rotors
+     *  ORDER and fixed rotors at FIXED, together with its index in KEYS,
+     *  for sorting. */
+    private static void catalogOrder(Machine machine, String[] order,
+                                     int[] fixed, long[] keys, int start,
+                                     int count) {
+        machine.insertRotors(order);
+        machine.setPlugboard(null);
+        int n = machine.alphabet().size();
+        int[] positions = new int[machine.numRotors()];
+        System.arraycopy(fixed, 0, positions, 1, fixed.length);
+        int[][] lengths = new int[INDICATOR_LENGTH / 2][];
+        for (int k = start; k < start + count; k++) {
+            machine.setPositions(positions);
+            int[][] products = products(machine);
+            for (int i = 0; i < products.length; i++) {
+                lengths[i] = cycleLengths(products[i]);
+            }
+            keys[k] = (long) signature(lengths) << Integer.SIZE | k;
+            for (int i = positions.length - 1; i > fixed.length; i--) {
+                positions[i] += 1;
+                if (positions[i] < n) {
+                    break;
+                }
+                positions[i] = 0;
+            }
+        }
+    }
+
+    /** Write the catalog file named NAME for the configuration of MACHINE
+     *  with fixed rotors at FIXED, rotor orders ORDERS, and entries KEYS,
+     *  sorted, PERORDER for each rotor order. */
+    private static void write(Machine machine, int[] fixed,
+                              List<String[]> orders, long[] keys,
+                              int perOrder, String name) {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(machine.alphabet().size());
+            out.writeInt(machine.numRotors());
+            out.writeInt(machine.numPawls());
+            StringBuilder setting = new StringBuilder();
+            for (int c : fixed) {
+                setting.appendCodePoint(machine.alphabet().toCodePoint(c));
+            }
+            writeString(out, setting.toString());
+            out.writeInt(orders.size());
+            for (String[] order : orders) {
+                writeString(out, String.join(" ", order));
+            }
+            long table = out.size();
+            for (long key : keys) {
+                int k = (int) key;
+                out.writeInt((int) (key >> Integer.SIZE));
+                out.writeInt(k / perOrder);
+                out.writeInt(k % perOrder);
+            }
+            out.writeLong(keys.length);
+            out.writeLong(table);
+        } catch (IOException excp) {
+            throw error("could not write catalog %s", name);
+        }
+    }
+
+    /** Write S to OUT as a 4-byte length followed by its bytes. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return the string stored at POSN in my file. */
+    private String string(int posn) {
+        byte[] bytes = new byte[_map.getInt(posn)];
+        _map.get(posn + Integer.BYTES, bytes);
+        return new String(bytes);
+    }
+
+    /** Return the settings, in ALPHABET, of the PAWLS moving rotors at
+     *  start position POSITION. */
+    private static String setting(Alphabet alphabet, int position,
+                                  int pawls) {
+        int[] chars = new int[pawls];
+        for (int i = pawls - 1; i >= 0; i--) {
+            chars[i] = alphabet.toCodePoint(position % alphabet.size());
+            position /= alphabet.size();
+        }
+        return new String(chars, 0, pawls);
+    }
+
+    /** Return the signature of entry K. */
+    private int signatureAt(int k) {
+        return _map.getInt(_table + k * ENTRY_SIZE);
+    }
+
+    /** Return the first entry whose signature is at least SIGNATURE. */
+    private int firstEntry(int signature) {
+        int lo = 0, hi = _entries;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (signatureAt(mid) < signature) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return the lines of the file named NAME. */
+    private static List<String> readLines(String name) {
+        LineReader in = LineReader.open(name, 0);
+        try {
+            List<String> result = new ArrayList<>();
+            for (String line = in.nextLine(); line != null;
+                 line = in.nextLine()) {
+                result.add(line);
+            }
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Return the machine configured by the file named NAME. */
+    private static Machine readMachine(String name) {
+        LineReader in = LineReader.open(name, 0);
+        try {
+            return Main.readMachine(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Name of the system property giving the setting of fixed rotors
+     *  while building. */
+    static final String FIXED_PROPERTY = "enigma.catalog.fixed";
+
+    /** Number of characters in a doubled message key. */
+    static final int INDICATOR_LENGTH = 6;
+
+    /** Names of the indicator products, for messages. */
+    private static final String[] PRODUCT_NAMES = { "AD", "BE", "CF" };
+
+    /** First four bytes of a catalog file. */
+    private static final int MAGIC = 0x454e5243;
+
+    /** Size of the fixed part of a catalog file's header. */
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    /** Size of each entry in a catalog's table. */
+    private static final int ENTRY_SIZE = 3 * Integer.BYTES;
+
+    /** Size of the trailer of a catalog file. */
+    private static final int TRAILER_SIZE = 2 * Long.BYTES;
+
+    /** Largest number of entries in a catalog.  The keys of all entries
+     *  are sorted on the heap, 8 bytes each, so this keeps a build within
+     *  a default heap (and the file well within one mapping). */
+    private static final long MAX_ENTRIES = 1 << 24;
+
+    /** FNV-1a offset basis. */
+    private static final int FNV_BASIS = 0x811c9dc5;
+
+    /** FNV-1a prime. */
+    private static final int FNV_PRIME = 0x01000193;
+
+    /** The contents of my catalog file. */
+    private final MappedByteBuffer _map;
+
+    /** The size of the cataloged alphabet. */
+    private final int _size;
+
+    /** The numbers of rotors and pawls of the cataloged machine. */
+    private final int _numRotors, _pawls;
+
+    /** The setting of the fixed rotors. */
+    private final String _fixed;
+
+    /** The rotor orders, each a list of rotor names. */
+    private final String[][] _orders;
+
+    /** The number of entries. */
+    private final int _entries;
+
+    /** Position of the table in _map. */
+    private final int _table;
+}
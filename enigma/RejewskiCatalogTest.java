@@ -0,0 +1,107 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RejewskiCatalog class.
+ *  @author Kevin Chen
+ */
+public class RejewskiCatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /** The day's settings, whose fixed rotor is at the cataloged
+     *  setting. */
+    private static final String DAY = "* B Beta II I III AQEV (AQ) (EP) (TZ)";
+
+    /** Return indicators from COUNT random message keys, each
+     *  enciphered twice from the start position of M, using RANDOM. */
+    private static List<String> indicators(Machine m, int count,
+                                           Random random) {
+        int[] start = m.positions();
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int j = 0; j < RejewskiCatalog.INDICATOR_LENGTH / 2; j++) {
+                key.append(UPPER_STRING.charAt(random.nextInt(26)));
+            }
+            m.setPositions(start);
+            result.add(m.convert(key.toString() + key));
+        }
+        return result;
+    }
+
+    @Test
+    public void testFindsDaySettings() throws IOException {
+        File file = File.createTempFile("rejewski", ".cat");
+        file.deleteOnExit();
+        long n = RejewskiCatalog.build(TestUtils::navalMachine,
+                                       Arrays.asList("B", "BETA", "I", "II",
+                                                     "III"),
+                                       null, file.getPath());
+        assertEquals(6 * 26 * 26 * 26, n);
+
+        Machine day = navalMachine();
+        Main.setUp(day, DAY);
+        int[][] products = RejewskiCatalog.fromIndicators(
+            indicators(day, 400, new Random(42)), UPPER);
+        RejewskiCatalog catalog = new RejewskiCatalog(file.getPath());
+        assertEquals(n, catalog.size());
+        List<String> found = catalog.find(navalMachine(), products);
+        assertTrue(msg("find", "%s not in %s", DAY, found),
+                   found.contains("* B Beta II I III AQEV"));
+    }
+
+    @Test
+    public void testProductsIgnorePlugboard() {
+        Machine plain = navalMachine(), plugged = navalMachine();
+        Main.setUp(plain, "* B Beta II I III AQEV");
+        Main.setUp(plugged, DAY);
+        int[][] a = RejewskiCatalog.products(plain),
+            b = RejewskiCatalog.products(plugged);
+        assertEquals(RejewskiCatalog.describe(a),
+                     RejewskiCatalog.describe(b));
+        for (int i = 0; i < a.length; i++) {
+            int[] lengths = RejewskiCatalog.cycleLengths(a[i]);
+            assertEquals(26, Arrays.stream(lengths).sum());
+        }
+    }
+
+    @Test
+    public void testTooLargeCatalog() throws IOException {
+        File file = File.createTempFile("rejewski", ".cat");
+        file.deleteOnExit();
+        try {
+            RejewskiCatalog.build(TestUtils::navalMachine,
+                                  new ArrayList<>(), null, file.getPath());
+            fail("catalog of every naval rotor order built");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage(),
+                       excp.getMessage().contains("limit of 16777216"));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTooFewIndicators() {
+        RejewskiCatalog.fromIndicators(Arrays.asList("ABCDEF"), UPPER);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testInconsistentIndicators() {
+        RejewskiCatalog.fromIndicators(Arrays.asList("ABCDEF", "AXYZUV"),
+                                       UPPER);
+    }
+}
@@ -12,6 +12,20 @@ class Rotor {
         _name = name;
         _permutation = perm;
         _setting = 0;
+        _size = perm.size();
+        long bytes = (long) _size * _size * IndexTable.entrySize(_size - 1);
+        if (bytes <= TABLE_LIMIT) {
+            _forward = IndexTable.create(_size * _size, _size - 1);
+            _backward = IndexTable.create(_size * _size, _size - 1);
+            for (int s = 0; s < _size; s++) {
+                for (int p = 0; p < _size; p++) {
+                    _forward.set(s * _size + p, shift(perm.permute(p + s), s));
+                    _backward.set(s * _size + p, shift(perm.invert(p + s), s));
+                }
+            }
+        } else {
+            _forward = _backward = null;
+        }
     }
 
     /** Return my name. */
@@ -52,32 +66,62 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _setting = posn;
+        _offset = posn * _size;
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
-        _setting = alphabet().toInt(cposn);
+        set(alphabet().toInt(cposn));
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int in = Math.floorMod(p + _setting, alphabet().size());
-        in = _permutation.permute(in);
-        return Math.floorMod(in - _setting, alphabet().size());
+        if (_forward != null) {
+            return _forward.get(_offset + p);
+        }
+        return shift(_permutation.permute(p + _setting), _setting);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int in = Math.floorMod(e + _setting, alphabet().size());
-        in = _permutation.invert(in);
-        return Math.floorMod(in - _setting, alphabet().size());
+        if (_backward != null) {
+            return _backward.get(_offset + e);
+        }
+        return shift(_permutation.invert(e + _setting), _setting);
+    }
+
+    /** Return convertForward(P) as it would be at setting S. */
+    int convertForward(int p, int s) {
+        if (_forward != null) {
+            return _forward.get(s * _size + p);
+        }
+        return shift(_permutation.permute(p + s), s);
+    }
+
+    /** Return convertBackward(E) as it would be at setting S. */
+    int convertBackward(int e, int s) {
+        if (_backward != null) {
+            return _backward.get(s * _size + e);
+        }
+        return shift(_permutation.invert(e + s), s);
+    }
+
+    /** Return the index of contact C, as seen from my setting S. */
+    private int shift(int c, int s) {
+        return Math.floorMod(c - s, _size);
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return notchAt(_setting);
+    }
+
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  when at setting POSN. */
+    boolean notchAt(int posn) {
         return false;
     }
 
@@ -90,6 +134,13 @@ class Rotor {
         return "Rotor " + _name;
     }
 
+    /** Maximum number of bytes of any one per-setting table (a rotor has
+     *  one forward and one backward table, so may hold twice this),
+     *  given by system property enigma.rotor.tablelimit.  Rotors whose
+     *  tables would be larger compute their conversions instead. */
+    static final long TABLE_LIMIT =
+        Long.getLong("enigma.rotor.tablelimit", 1 << 20);
+
     /** My name. */
     private final String _name;
 
@@ -98,4 +149,18 @@ class Rotor {
 
     /** The current setting of the rotor. */
     private int _setting;
+
+    /** The size of my alphabet. */
+    private final int _size;
+
+    /** _setting * _size: the start of my current setting's tables. */
+    private int _offset;
+
+    /** Entry S * size() + P is convertForward(P) at setting S, or null if
+     *  that table would exceed TABLE_LIMIT. */
+    private final IndexTable _forward;
+
+    /** Entry S * size() + E is convertBackward(E) at setting S, or null if
+     *  that table would exceed TABLE_LIMIT. */
+    private final IndexTable _backward;
 }
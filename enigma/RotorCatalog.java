@@ -0,0 +1,127 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** The rotors from which a machine may choose, by name (ignoring case).
+ *  Rotors are added as descriptions from the configuration file, which
+ *  are only indexed by name; a rotor's Permutation and tables are built
+ *  the first time it is asked for, and then kept.  Catalogs may be used
+ *  from several threads at once.
+ *  @author Kevin Chen
+ */
+class RotorCatalog {
+
+    /** An empty catalog of rotors with alphabet ALPHA. */
+    RotorCatalog(Alphabet alpha) {
+        _alphabet = alpha;
+        _descriptions = new ConcurrentHashMap<>();
+        _rotors = new ConcurrentHashMap<>();
+        _names = new ArrayList<>();
+    }
+
+    /** A catalog of ROTORS, which are already built, with alphabet
+     *  ALPHA. */
+    RotorCatalog(Alphabet alpha, Collection<Rotor> rotors) {
+        this(alpha);
+        for (Rotor rotor : rotors) {
+            if (_rotors.putIfAbsent(key(rotor.name()), rotor) == null) {
+                _names.add(rotor.name());
+            }
+        }
+    }
+
+    /** Add the rotor described by DESCRIPTION, which has the form of a
+     *  rotor description in a configuration file: a name, a type (M, N or
+     *  R) with any notches following M, and cycles.  If a rotor with the
+     *  same name is already present, DESCRIPTION is ignored. */
+    void add(String description) {
+        description = description.trim();
+        int end = nameEnd(description);
+        if (end == 0 || end == description.length()) {
+            throw error("bad rotor description");
+        }
+        String name = description.substring(0, end);
+        String key = key(name);
+        if (!_rotors.containsKey(key)
+            && _descriptions.putIfAbsent(key, description) == null) {
+            synchronized (_names) {
+                _names.add(name);
+            }
+        }
+    }
+
+    /** Return the names of my rotors, in the order they were added. */
+    List<String> names() {
+        synchronized (_names) {
+            return new ArrayList<>(_names);
+        }
+    }
+
+    /** Return the rotor named NAME, building it if need be, or null if
+     *  there is none. */
+    Rotor get(String name) {
+        String key = key(name);
+        Rotor result = _rotors.get(key);
+        if (result == null) {
+            String description = _descriptions.get(key);
+            if (description == null) {
+                return null;
+            }
+            result = _rotors.computeIfAbsent(key, k -> build(description));
+        }
+        return result;
+    }
+
+    /** Return the rotor described by DESCRIPTION (see add). */
+    private Rotor build(String description) {
+        int end = nameEnd(description);
+        String name = description.substring(0, end);
+        String rest = description.substring(end).trim();
+        int cycles = rest.indexOf('(');
+        Permutation perm =
+            new Permutation(cycles < 0 ? "" : rest.substring(cycles),
+                            _alphabet);
+        String type = cycles < 0 ? rest : rest.substring(0, cycles).trim();
+        if (type.startsWith("M")) {
+            return new MovingRotor(name, perm, type.substring(1));
+        } else if (type.equals("N")) {
+            return new FixedRotor(name, perm);
+        } else {
+            return new Reflector(name, perm);
+        }
+    }
+
+    /** Return the index of the end of the name at the start of
+     *  DESCRIPTION. */
+    private static int nameEnd(String description) {
+        int end = 0;
+        while (end < description.length()
+               && !Character.isWhitespace(description.charAt(end))) {
+            end += 1;
+        }
+        return end;
+    }
+
+    /** Return the key under which a rotor named NAME is stored. */
+    private static String key(String name) {
+        return name.toUpperCase();
+    }
+
+    /** The alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** Descriptions of my rotors, keyed by upper-case name. */
+    private final Map<String, String> _descriptions;
+
+    /** My rotors that have been built, keyed by upper-case name. */
+    private final Map<String, Rotor> _rotors;
+
+    /** The names of my rotors, in the order added. */
+    private final List<String> _names;
+}
@@ -0,0 +1,73 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RotorCatalog class.
+ *  @author Kevin Chen
+ */
+public class RotorCatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testBuildsEachKind() {
+        RotorCatalog catalog = new RotorCatalog(UPPER);
+        catalog.add(" I MQ (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)");
+        catalog.add("Beta N (ALBEVFCYODJWUGNMQTZSKPR) (HIX)");
+        catalog.add("B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)"
+                    + " (RX) (SZ) (TV)");
+        Rotor i = catalog.get("i");
+        assertTrue(i instanceof MovingRotor);
+        assertTrue(i.notchAt(UPPER.toInt('Q')));
+        assertEquals(UPPER.toInt('E'), i.convertForward(UPPER.toInt('A')));
+        assertFalse(catalog.get("BETA").rotates());
+        assertTrue(catalog.get("B").reflecting());
+        assertNull(catalog.get("C"));
+    }
+
+    @Test
+    public void testLazyAndMemoized() {
+        RotorCatalog catalog = new RotorCatalog(UPPER);
+        catalog.add("Bad N (AB");
+        catalog.add("II ME (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)");
+        assertSame(catalog.get("II"), catalog.get("ii"));
+        try {
+            catalog.get("Bad");
+            fail("malformed rotor built");
+        } catch (EnigmaException excp) {
+            /* Reported only when the rotor is used. */
+        }
+    }
+
+    @Test
+    public void testConcurrentUseBuildsOnce() throws Exception {
+        RotorCatalog catalog = new RotorCatalog(UPPER);
+        catalog.add("III MV (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Rotor>> results = new ArrayList<>();
+            for (int k = 0; k < 16; k += 1) {
+                results.add(pool.submit(() -> catalog.get("III")));
+            }
+            Rotor first = results.get(0).get();
+            for (Future<Rotor> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
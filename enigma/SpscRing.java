@@ -0,0 +1,124 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** A bounded queue for exactly one producer thread and one consumer
+ *  thread, kept in a ring buffer without locks.  Each side owns one
+ *  counter and only reads the other's, so offer and poll need no
+ *  compare-and-set.  The blocking operations spin briefly and then park,
+ *  and give up once the ring has been cancelled.
+ *  @author Kevin Chen
+ */
+class SpscRing<T> {
+
+    /** A ring holding up to CAPACITY items, rounded up to a power of
+     *  two. */
+    SpscRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        _items = new Object[size];
+        _mask = size - 1;
+        _head = new AtomicLong();
+        _tail = new AtomicLong();
+    }
+
+    /** Add ITEM at the tail of the ring, returning false, without adding
+     *  it, if the ring is full.  Called only by the producer. */
+    boolean offer(T item) {
+        long tail = _tail.get();
+        if (tail - _headSeen >= _items.length) {
+            _headSeen = _head.get();
+            if (tail - _headSeen >= _items.length) {
+                return false;
+            }
+        }
+        _items[(int) tail & _mask] = item;
+        _tail.lazySet(tail + 1);
+        return true;
+    }
+
+    /** Remove and return the item at the head of the ring, or null if it
+     *  is empty.  Called only by the consumer. */
+    T poll() {
+        long head = _head.get();
+        if (head >= _tailSeen) {
+            _tailSeen = _tail.get();
+            if (head >= _tailSeen) {
+                return null;
+            }
+        }
+        int k = (int) head & _mask;
+        @SuppressWarnings("unchecked")
+        T item = (T) _items[k];
+        _items[k] = null;
+        _head.lazySet(head + 1);
+        return item;
+    }
+
+    /** Add ITEM at the tail of the ring, waiting for room.  Returns false,
+     *  without adding it, if the ring is cancelled. */
+    boolean put(T item) {
+        for (int tries = 0; !offer(item); tries++) {
+            if (_cancelled) {
+                return false;
+            }
+            backOff(tries);
+        }
+        return true;
+    }
+
+    /** Remove and return the item at the head of the ring, waiting for
+     *  one.  Returns null if the ring is cancelled. */
+    T take() {
+        for (int tries = 0; ; tries++) {
+            T item = poll();
+            if (item != null) {
+                return item;
+            } else if (_cancelled) {
+                return null;
+            }
+            backOff(tries);
+        }
+    }
+
+    /** Make blocked and future calls of put and take give up. */
+    void cancel() {
+        _cancelled = true;
+    }
+
+    /** Wait a little before retrying, TRIES retries having failed. */
+    private static void backOff(int tries) {
+        if (tries < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /** Number of retries that spin before parking. */
+    private static final int SPINS = 1000;
+
+    /** Time to park between later retries. */
+    private static final long PARK_NANOS = 20_000;
+
+    /** The items, at their counter values modulo the length. */
+    private final Object[] _items;
+
+    /** Mask giving an index into _items from a counter. */
+    private final int _mask;
+
+    /** Count of items removed, written only by the consumer. */
+    private final AtomicLong _head;
+
+    /** Count of items added, written only by the producer. */
+    private final AtomicLong _tail;
+
+    /** The producer's last reading of _head. */
+    private long _headSeen;
+
+    /** The consumer's last reading of _tail. */
+    private long _tailSeen;
+
+    /** True once the ring is cancelled. */
+    private volatile boolean _cancelled;
+}
@@ -0,0 +1,26 @@
+package enigma;
+
+/** A MachineEngine that converts through a flat per-setting table for
+ *  each rotor, without virtual calls on Rotors.
+ *  @author Kevin Chen
+ */
+class TableEngine extends CompiledEngine {
+
+    /** An engine compiled from the configuration of CONFIG. */
+    TableEngine(Machine config) {
+        super(config);
+    }
+
+    @Override
+    int convert(int c) {
+        step();
+        int n = _size;
+        for (int i = _slots - 1; i >= 0; i--) {
+            c = _forward[i][_posn[i] * n + c];
+        }
+        for (int i = 1; i < _slots; i++) {
+            c = _backward[i][_posn[i] * n + c];
+        }
+        return c;
+    }
+}
@@ -0,0 +1,179 @@
+package enigma;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static enigma.EnigmaException.*;
+
+/** A MachineEngine that passes all its work to another engine and keeps
+ *  TrafficStats of that engine's output as it is produced.  Each call of
+ *  setRotors starts a new message.  The statistics of each message are
+ *  written to a file when the message ends, followed at the end by those
+ *  of all messages together, as JSON or, if the file's name ends in
+ *  ".csv", as CSV.
+ *  @author Kevin Chen
+ */
+class TrafficAnalyzer extends MachineEngine {
+
+    /** An analyzer of the output of ENGINE that writes statistics to the
+     *  file named NAME. */
+    TrafficAnalyzer(MachineEngine engine, String name) {
+        _engine = engine;
+        _name = name;
+        _csv = name.endsWith(".csv");
+        _message = new TrafficStats(engine.alphabet());
+        _total = new TrafficStats(engine.alphabet());
+        _line = new StringBuilder();
+        try {
+            _out = new BufferedWriter(new FileWriter(name));
+            if (_csv) {
+                _out.write(_total.csvHeader("message", "setting"));
+                _out.write('\n');
+            } else {
+                _out.write("{\"messages\": [\n");
+            }
+        } catch (IOException excp) {
+            throw error("could not write statistics to %s", name);
+        }
+    }
+
+    @Override
+    Alphabet alphabet() {
+        return _engine.alphabet();
+    }
+
+    @Override
+    int numRotors() {
+        return _engine.numRotors();
+    }
+
+    @Override
+    int numPawls() {
+        return _engine.numPawls();
+    }
+
+    @Override
+    void insertRotors(String[] rotors) {
+        _engine.insertRotors(rotors);
+    }
+
+    @Override
+    void setRotors(String setting) {
+        _engine.setRotors(setting);
+        endMessage();
+        _count += 1;
+        _setting = setting;
+    }
+
+    @Override
+    void setPlugboard(Permutation plugboard) {
+        _engine.setPlugboard(plugboard);
+    }
+
+    @Override
+    int[] positions() {
+        return _engine.positions();
+    }
+
+    @Override
+    void setPositions(int[] positions) {
+        _engine.setPositions(positions);
+    }
+
+    @Override
+    int convert(int c) {
+        int result = _engine.convert(c);
+        _message.add(result);
+        return result;
+    }
+
+    @Override
+    void convertIndices(int[] buf, int start, int end) {
+        _engine.convertIndices(buf, start, end);
+        _message.add(buf, start, end);
+    }
+
+    /** Return the statistics of all messages so far, not counting the
+     *  current one. */
+    TrafficStats total() {
+        return _total;
+    }
+
+    /** End the current message and write the statistics of all messages
+     *  to my file, and close it. */
+    void close() {
+        endMessage();
+        _line.setLength(0);
+        if (_csv) {
+            _total.appendCsv(_line, "total", "");
+            _line.append('\n');
+        } else {
+            _line.append("],\n\"total\": ");
+            _total.appendJson(_line, TOP_TRIGRAMS);
+            _line.append("}\n");
+        }
+        try {
+            _out.write(_line.toString());
+            _out.close();
+        } catch (IOException excp) {
+            throw error("could not write statistics to %s", _name);
+        }
+    }
+
+    /** Write the statistics of the current message, if any, add them to
+     *  the total, and start afresh. */
+    private void endMessage() {
+        if (_count == 0) {
+            return;
+        }
+        _line.setLength(0);
+        String number = Integer.toString(_count);
+        if (_csv) {
+            _message.appendCsv(_line, number, _setting);
+        } else {
+            _line.append(_count > 1 ? ",\n" : "");
+            _message.appendJson(_line, TOP_TRIGRAMS, "message", number,
+                                "setting", TrafficStats.quote(_setting));
+        }
+        _line.append(_csv ? "\n" : "");
+        try {
+            _out.write(_line.toString());
+        } catch (IOException excp) {
+            throw error("could not write statistics to %s", _name);
+        }
+        _total.merge(_message);
+        _message.clear();
+    }
+
+    /** Number of repeated trigrams listed for each message. */
+    private static final int TOP_TRIGRAMS = 10;
+
+    /** The engine whose output I analyze. */
+    private final MachineEngine _engine;
+
+    /** The name of my file. */
+    private final String _name;
+
+    /** True iff my file is CSV rather than JSON. */
+    private final boolean _csv;
+
+    /** My file. */
+    private final Writer _out;
+
+    /** Statistics of the current message. */
+    private final TrafficStats _message;
+
+    /** Statistics of all earlier messages. */
+    private final TrafficStats _total;
+
+    /** Reusable buffer for one record. */
+    private final StringBuilder _line;
+
+    /** The number of messages started. */
+    private int _count;
+
+    /** The setting that started the current message. */
+    private String _setting;
+}
@@ -0,0 +1,323 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/** Statistics of a stream of characters from an alphabet: the frequency
+ *  of each character, the index of coincidence, and counts of repeated
+ *  trigrams (runs of three consecutive characters).  Characters are added
+ *  as alphabet indices, one run at a time; trigrams are counted within
+ *  runs, and a run continues across calls to add until endRun.  Stats
+ *  gathered separately, e.g. by different threads, can be merged; trigrams
+ *  spanning the boundary between them are not counted.
+ *  @author Kevin Chen
+ */
+class TrafficStats {
+
+    /** Empty statistics for characters of ALPHABET. */
+    TrafficStats(Alphabet alphabet) {
+        _alphabet = alphabet;
+        _size = alphabet.size();
+        _frequencies = new int[_size];
+        _keys = new long[INITIAL_TABLE];
+        _counts = new int[INITIAL_TABLE];
+        _prev1 = _prev2 = -1;
+    }
+
+    /** Add the character with index C to the current run. */
+    void add(int c) {
+        _frequencies[c] += 1;
+        _total += 1;
+        if (_prev2 >= 0) {
+            countTrigram(((long) _prev2 * _size + _prev1) * _size + c, 1);
+        }
+        _prev2 = _prev1;
+        _prev1 = c;
+    }
+
+    /** Add the characters with indices BUF[START .. END-1] to the current
+     *  run. */
+    void add(int[] buf, int start, int end) {
+        for (int i = start; i < end; i++) {
+            add(buf[i]);
+        }
+    }
+
+    /** End the current run, so that no trigram spans it and the next
+     *  character added. */
+    void endRun() {
+        _prev1 = _prev2 = -1;
+    }
+
+    /** Add the statistics in OTHER to mine. */
+    void merge(TrafficStats other) {
+        for (int c = 0; c < _size; c++) {
+            _frequencies[c] += other._frequencies[c];
+        }
+        _total += other._total;
+        for (int k = 0; k < other._keys.length; k++) {
+            if (other._keys[k] != 0) {
+                countTrigram(other._keys[k] - 1, other._counts[k]);
+            }
+        }
+    }
+
+    /** Discard all my statistics. */
+    void clear() {
+        Arrays.fill(_frequencies, 0);
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_counts, 0);
+        _total = _used = _repeated = 0;
+        _repeats = 0;
+        endRun();
+    }
+
+    /** Return the number of characters added. */
+    long total() {
+        return _total;
+    }
+
+    /** Return the number of times the character with index C was
+     *  added. */
+    int frequency(int c) {
+        return _frequencies[c];
+    }
+
+    /** Return the index of coincidence: the probability that two
+     *  characters chosen at random from those added are the same, or 0 if
+     *  fewer than two have been added. */
+    double indexOfCoincidence() {
+        if (_total < 2) {
+            return 0;
+        }
+        double pairs = 0;
+        for (int f : _frequencies) {
+            pairs += (double) f * (f - 1);
+        }
+        return pairs / ((double) _total * (_total - 1));
+    }
+
+    /** Return the number of distinct trigrams that occur more than
+     *  once. */
+    int repeatedTrigrams() {
+        return _repeated;
+    }
+
+    /** Return the number of occurrences of trigrams beyond the first of
+     *  each. */
+    long trigramRepeats() {
+        return _repeats;
+    }
+
+    /** Return the number of occurrences of TRIGRAM, a string of three
+     *  characters from my alphabet. */
+    int trigramCount(String trigram) {
+        long key = 0;
+        for (int c : trigram.codePoints().toArray()) {
+            key = key * _size + _alphabet.lookup(c);
+        }
+        int k = slot(key);
+        return _keys[k] == 0 ? 0 : _counts[k];
+    }
+
+    /** Append my statistics to OUT as a JSON object, including the LIMIT
+     *  most frequent repeated trigrams, and with the fields LABELS (pairs
+     *  of names and already-quoted values) first. */
+    void appendJson(StringBuilder out, int limit, String... labels) {
+        out.append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            out.append('"').append(labels[i]).append("\": ")
+                .append(labels[i + 1]).append(", ");
+        }
+        out.append("\"characters\": ").append(_total)
+            .append(", \"ioc\": ")
+            .append(String.format(Locale.ROOT, "%.6f", indexOfCoincidence()))
+            .append(", \"repeatedTrigrams\": ").append(_repeated)
+            .append(", \"trigramRepeats\": ").append(_repeats)
+            .append(", \"frequencies\": {");
+        for (int c = 0; c < _size; c++) {
+            out.append(c == 0 ? "" : ", ").append(quote(chars(c, 1)))
+                .append(": ").append(_frequencies[c]);
+        }
+        out.append("}, \"topTrigrams\": {");
+        int[] top = topTrigrams(limit);
+        for (int i = 0; i < top.length; i++) {
+            out.append(i == 0 ? "" : ", ")
+                .append(quote(chars(_keys[top[i]] - 1, 3)))
+                .append(": ").append(_counts[top[i]]);
+        }
+        out.append("}}");
+    }
+
+    /** Return the header of a CSV table of statistics, whose first columns
+     *  are named by LABELS. */
+    String csvHeader(String... labels) {
+        StringBuilder out = new StringBuilder();
+        for (String label : labels) {
+            out.append(label).append(',');
+        }
+        out.append("characters,ioc,repeated_trigrams,trigram_repeats");
+        for (int c = 0; c < _size; c++) {
+            out.append(',').append(csvQuote(chars(c, 1)));
+        }
+        return out.toString();
+    }
+
+    /** Append my statistics to OUT as a row of CSV, starting with the
+     *  values LABELS. */
+    void appendCsv(StringBuilder out, String... labels) {
+        for (String label : labels) {
+            out.append(csvQuote(label)).append(',');
+        }
+        out.append(_total).append(',')
+            .append(String.format(Locale.ROOT, "%.6f", indexOfCoincidence()))
+            .append(',')
+            .append(_repeated).append(',').append(_repeats);
+        for (int f : _frequencies) {
+            out.append(',').append(f);
+        }
+    }
+
+    /** Return STR as a JSON string. */
+    static String quote(String str) {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    /** Return STR as a CSV field. */
+    private static String csvQuote(String str) {
+        if (str.indexOf(',') < 0 && str.indexOf('"') < 0
+            && str.indexOf('\n') < 0) {
+            return str;
+        }
+        return '"' + str.replace("\"", "\"\"") + '"';
+    }
+
+    /** Return the LENGTH characters whose indices are the digits of KEY
+     *  in base size. */
+    private String chars(long key, int length) {
+        int[] result = new int[length];
+        for (int i = length - 1; i >= 0; i--) {
+            result[i] = _alphabet.toCodePoint((int) (key % _size));
+            key /= _size;
+        }
+        return new String(result, 0, length);
+    }
+
+    /** Return the slots of the LIMIT most frequent repeated trigrams, most
+     *  frequent first. */
+    private int[] topTrigrams(int limit) {
+        List<Integer> repeated = new ArrayList<>();
+        for (int k = 0; k < _keys.length; k++) {
+            if (_keys[k] != 0 && _counts[k] > 1) {
+                repeated.add(k);
+            }
+        }
+        repeated.sort((j, k) -> _counts[j] != _counts[k]
+                      ? _counts[k] - _counts[j]
+                      : Long.compare(_keys[j], _keys[k]));
+        int[] result = new int[Math.min(limit, repeated.size())];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = repeated.get(i);
+        }
+        return result;
+    }
+
+    /** Add N occurrences of the trigram whose digits in base size are
+     *  KEY. */
+    private void countTrigram(long key, int n) {
+        int k = slot(key);
+        if (_keys[k] == 0) {
+            _keys[k] = key + 1;
+            _used += 1;
+        }
+        int before = _counts[k];
+        _counts[k] = before + n;
+        if (before < 2 && before + n >= 2) {
+            _repeated += 1;
+        }
+        _repeats += Math.max(before + n - 1, 0) - Math.max(before - 1, 0);
+        if (2 * _used > _keys.length) {
+            grow();
+        }
+    }
+
+    /** Return the slot of my table holding KEY, or the empty slot where it
+     *  belongs. */
+    private int slot(long key) {
+        int mask = _keys.length - 1;
+        int k = (int) (key * HASH_MULTIPLIER >>> HASH_SHIFT) & mask;
+        while (_keys[k] != 0 && _keys[k] != key + 1) {
+            k = (k + 1) & mask;
+        }
+        return k;
+    }
+
+    /** Double the size of my trigram table. */
+    private void grow() {
+        long[] keys = _keys;
+        int[] counts = _counts;
+        _keys = new long[2 * keys.length];
+        _counts = new int[2 * keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            if (keys[k] != 0) {
+                int j = slot(keys[k] - 1);
+                _keys[j] = keys[k];
+                _counts[j] = counts[k];
+            }
+        }
+    }
+
+    /** Initial size of the trigram table (a power of two). */
+    private static final int INITIAL_TABLE = 1 << 10;
+
+    /** Multiplier for hashing trigram keys. */
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    /** Shift for hashing trigram keys. */
+    private static final int HASH_SHIFT = 32;
+
+    /** My alphabet. */
+    private final Alphabet _alphabet;
+
+    /** The size of my alphabet. */
+    private final int _size;
+
+    /** The number of times each character has been added. */
+    private final int[] _frequencies;
+
+    /** The number of characters added. */
+    private long _total;
+
+    /** Trigram table: each slot holds 1 + the trigram's digits in base
+     *  size, or 0 if empty. */
+    private long[] _keys;
+
+    /** Number of occurrences of the trigram in each slot of _keys. */
+    private int[] _counts;
+
+    /** Number of slots of _keys in use. */
+    private int _used;
+
+    /** Number of distinct trigrams occurring more than once. */
+    private int _repeated;
+
+    /** Occurrences of trigrams beyond the first of each. */
+    private long _repeats;
+
+    /** The last two characters of the current run, most recent first, or
+     *  -1. */
+    private int _prev1, _prev2;
+}
@@ -0,0 +1,100 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the TrafficStats class.
+ *  @author Kevin Chen
+ */
+public class TrafficStatsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Return stats of the characters of MSG, as one run. */
+    private TrafficStats stats(String msg) {
+        TrafficStats result = new TrafficStats(UPPER);
+        for (char c : msg.toCharArray()) {
+            result.add(UPPER.toInt(c));
+        }
+        return result;
+    }
+
+    @Test
+    public void testCounts() {
+        TrafficStats s = stats("THETHEATHE");
+        assertEquals(10, s.total());
+        assertEquals(3, s.frequency(UPPER.toInt('T')));
+        assertEquals(3, s.trigramCount("THE"));
+        assertEquals(1, s.trigramCount("EAT"));
+        assertEquals(1, s.repeatedTrigrams());
+        assertEquals(2, s.trigramRepeats());
+        assertEquals((3 * 2 + 3 * 2 + 3 * 2) / 90.0,
+                     s.indexOfCoincidence(), 1e-9);
+    }
+
+    @Test
+    public void testMergeMatchesRuns() {
+        TrafficStats whole = stats("ABCABC");
+        whole.endRun();
+        whole.add(UPPER.toInt('A'));
+        TrafficStats merged = stats("ABCABC");
+        merged.merge(stats("A"));
+        assertEquals(whole.total(), merged.total());
+        assertEquals(whole.frequency(0), merged.frequency(0));
+        assertEquals(whole.indexOfCoincidence(),
+                     merged.indexOfCoincidence(), 1e-12);
+        assertEquals(2, merged.trigramCount("ABC"));
+        assertEquals(whole.repeatedTrigrams(), merged.repeatedTrigrams());
+        assertEquals(whole.trigramRepeats(), merged.trigramRepeats());
+    }
+
+    @Test
+    public void testTableGrows() {
+        TrafficStats s = new TrafficStats(UPPER);
+        for (int i = 0; i < 26 * 26 * 26 + 2; i += 1) {
+            s.add(i % 26);
+            s.add(i / 26 % 26);
+            s.add(i / 676 % 26);
+            s.endRun();
+        }
+        assertEquals(2, s.trigramCount("AAA"));
+        assertEquals(1, s.trigramCount("ZYX"));
+        assertEquals(2, s.trigramRepeats());
+    }
+
+    @Test
+    public void testNumbersIgnoreLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            TrafficStats s = stats("THETHEATHE");
+            StringBuilder json = new StringBuilder();
+            s.appendJson(json, 3);
+            Matcher ioc = Pattern.compile("\"ioc\": ([^,}]*)[,}]")
+                .matcher(json);
+            assertTrue(json.toString(), ioc.find());
+            assertEquals(s.indexOfCoincidence(),
+                         Double.parseDouble(ioc.group(1)), 1e-6);
+
+            StringBuilder csv = new StringBuilder();
+            s.appendCsv(csv, "1");
+            String[] header = s.csvHeader("message").split(","),
+                row = csv.toString().split(",");
+            assertEquals(header.length, row.length);
+            assertEquals(s.indexOfCoincidence(),
+                         Double.parseDouble(row[2]), 1e-6);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A training run for building a class-data sharing archive: runs Main
+ *  once on each input file F.inp in the directories named by its
+ *  arguments, using F.conf as the configuration if it exists and
+ *  otherwise default.conf, and discards the output.  This loads the
+ *  classes that an ordinary run of Main uses.
+ *  @author Kevin Chen
+ */
+class Training {
+
+    /** Run Main on each input in the directories named by ARGS. */
+    public static void main(String... args) {
+        try {
+            File output = File.createTempFile("enigma", ".out");
+            try {
+                for (String dir : args) {
+                    train(new File(dir), output);
+                }
+            } finally {
+                output.delete();
+            }
+            return;
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Run Main on each input in DIR, writing to OUTPUT. */
+    private static void train(File dir, File output) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw error("could not list %s", dir);
+        }
+        Arrays.sort(files);
+        for (File input : files) {
+            String name = input.getPath();
+            if (!name.endsWith(".inp")) {
+                continue;
+            }
+            File config = new File(name.replaceAll("\\.inp$", ".conf"));
+            if (!config.exists()) {
+                config = new File(dir, "default.conf");
+            }
+            Main.main(config.getPath(), name, output.getPath());
+        }
+    }
+}
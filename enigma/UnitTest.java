@@ -10,7 +10,12 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(PermutationTest.class, MovingRotorTest.class);
+        textui.runClasses(PermutationTest.class, MovingRotorTest.class,
+                          MachineProcessorTest.class, FormatterTest.class,
+                          MachineFuzzTest.class, RotorCatalogTest.class,
+                          CascadeTest.class, TrafficStatsTest.class,
+                          RejewskiCatalogTest.class, PositionAtlasTest.class,
+                          CompressionTest.class, MainTest.class);
     }
 
 }
@@ -0,0 +1,174 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/** An output stream whose bytes are written to another stream by a
+ *  thread of its own.  Bytes are gathered into chunks from a fixed pool,
+ *  which pass between the threads through SpscRings, so writing (and
+ *  any compression done by the other stream) overlaps with the work of
+ *  the thread producing the output.  Only one thread may write to the
+ *  stream, and it must be closed to complete the output.
+ *  @author Kevin Chen
+ */
+class WriteBehindStream extends OutputStream {
+
+    /** A stream writing to OUT, which it takes over. */
+    WriteBehindStream(OutputStream out) {
+        _out = out;
+        _free = new SpscRing<>(POOL_SIZE);
+        for (int i = 0; i < POOL_SIZE; i++) {
+            _free.offer(ByteBuffer.allocate(CHUNK_SIZE));
+        }
+        _full = new SpscRing<>(POOL_SIZE);
+        _chunk = _free.poll();
+        _thread = new Thread(this::writeBehind, "write-behind");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!_chunk.hasRemaining()) {
+            pass();
+        }
+        _chunk.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!_chunk.hasRemaining()) {
+                pass();
+            }
+            int n = Math.min(len, _chunk.remaining());
+            _chunk.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Pass any bytes written so far on to my thread, wait for it to
+     *  write them, and flush the other stream. */
+    @Override
+    public void flush() throws IOException {
+        if (_chunk.position() > 0) {
+            pass();
+        }
+        while (_done < _passed) {
+            if (_failure != null) {
+                throw _failure;
+            }
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        _out.flush();
+    }
+
+    /** Write all remaining bytes, close the other stream, and wait for
+     *  my thread to finish. */
+    @Override
+    public void close() throws IOException {
+        if (_chunk == null) {
+            return;
+        }
+        if (_chunk.position() > 0) {
+            pass();
+        }
+        _chunk = null;
+        _full.put(END);
+        try {
+            _thread.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing");
+        }
+        if (_failure != null) {
+            throw _failure;
+        }
+    }
+
+    /** Pass _chunk to my thread and take an empty one. */
+    private void pass() throws IOException {
+        _chunk.flip();
+        if (_failure != null || !_full.put(_chunk)) {
+            throw failure();
+        }
+        _passed += 1;
+        _chunk = _free.take();
+        if (_chunk == null) {
+            throw failure();
+        }
+        _chunk.clear();
+    }
+
+    /** Return the error that stopped my thread, or a new one if it has
+     *  not been recorded. */
+    private IOException failure() {
+        IOException result = _failure;
+        return result != null ? result
+            : new IOException("write-behind stopped");
+    }
+
+    /** Write chunks to _out until the end or an error, and then close
+     *  _out. */
+    private void writeBehind() {
+        try {
+            for (ByteBuffer chunk = _full.take();
+                 chunk != null && chunk != END; chunk = _full.take()) {
+                _out.write(chunk.array(), 0, chunk.limit());
+                _free.put(chunk);
+                _done += 1;
+            }
+        } catch (IOException excp) {
+            _failure = excp;
+            _free.cancel();
+            _full.cancel();
+        } finally {
+            try {
+                _out.close();
+            } catch (IOException excp) {
+                if (_failure == null) {
+                    _failure = excp;
+                }
+            }
+        }
+    }
+
+    /** Size of each chunk. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Number of chunks in the pool. */
+    private static final int POOL_SIZE = 8;
+
+    /** Time to park between checks that flushed chunks are written. */
+    private static final long PARK_NANOS = 20_000;
+
+    /** Marks the end of the stream of chunks. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** The stream I write. */
+    private final OutputStream _out;
+
+    /** Empty chunks, returned by my thread. */
+    private final SpscRing<ByteBuffer> _free;
+
+    /** Filled chunks, in order. */
+    private final SpscRing<ByteBuffer> _full;
+
+    /** The thread writing _out. */
+    private final Thread _thread;
+
+    /** The chunk being filled, or null once I am closed. */
+    private ByteBuffer _chunk;
+
+    /** Number of chunks passed to my thread. */
+    private long _passed;
+
+    /** Number of chunks my thread has written, counted only by it. */
+    private volatile long _done;
+
+    /** The error that stopped writing, or null. */
+    private volatile IOException _failure;
+}